@@ -0,0 +1,103 @@
+package com.logreplay.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic FIX Log Corpus for the Benchmarks
+ *
+ * Lines look like the production FixMSFLogger output ("... parse: " then a
+ * FIX.4.2 message with literal ^A delimiters), so every hot path sees the
+ * same shape it sees in the real logs:
+ * - 8, 9, 35, 49, 56, 34, 52, 37, 11, 55, 54, 38, 44 and 10 on every message
+ * - padded with custom tags (5000+) up to the requested tag count
+ * - order IDs (37) unique, symbols drawn from a small set so tag 55 keys
+ *   collide the way they do in production
+ *
+ * Same seed, same corpus: runs are comparable across commits.
+ */
+public final class FixCorpus {
+
+    public static final long SEED = 42;
+
+    private static final String SOH = "^A";
+    private static final String[] SYMBOLS = { "VOD", "KEY", "BARC", "HSBA", "RIO", "BP", "SHEL", "AZN" };
+    private static final int FIXED_TAGS = 14;
+
+    private FixCorpus() {
+    }
+
+    /**
+     * Original log lines: count messages of (at least FIXED_TAGS) tags each.
+     */
+    public static List<String> originals(int count, int tags, long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(line(i, tags, random, 0));
+        }
+        return lines;
+    }
+
+    /**
+     * Replayed counterparts of the originals: identical, except for a changed
+     * price (44) on roughly mismatchPercent of them.
+     */
+    public static List<String> replays(int count, int tags, long seed, int mismatchPercent) {
+        Random random = new Random(seed);
+        Random mismatches = new Random(seed + 1);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int shift = mismatches.nextInt(100) < mismatchPercent ? 1 : 0;
+            lines.add(line(i, tags, random, shift));
+        }
+        return lines;
+    }
+
+    /**
+     * Just the FIX part of a log line.
+     */
+    public static String fixOf(String line) {
+        return line.substring(line.lastIndexOf("parse: ") + "parse: ".length());
+    }
+
+    public static Path write(List<String> lines, String prefix) throws IOException {
+        Path path = Files.createTempFile(prefix, ".log");
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        return path;
+    }
+
+    private static String line(int i, int tags, Random random, int priceShift) {
+        StringBuilder fix = new StringBuilder(64 + tags * 16);
+        fix.append("8=FIX.4.2").append(SOH)
+                .append("9=0").append(200 + random.nextInt(200)).append(SOH)
+                .append("35=D").append(SOH)
+                .append("49=BLPCGAP").append(SOH)
+                .append("56=CGA6").append(SOH)
+                .append("34=").append(1000 + i).append(SOH)
+                .append("52=20251205-06:00:00.431").append(SOH)
+                .append("37=").append(8_000_000_000L + i).append(SOH)
+                .append("11=5DTX").append(Integer.toString(i, 36).toUpperCase()).append("XB001").append(SOH)
+                .append("55=").append(SYMBOLS[random.nextInt(SYMBOLS.length)]).append(SOH)
+                .append("54=").append(1 + random.nextInt(2)).append(SOH)
+                .append("38=").append(100 * (1 + random.nextInt(50))).append(SOH)
+                .append("44=").append(100 + random.nextInt(900) + priceShift).append(".25").append(SOH);
+        for (int t = FIXED_TAGS; t < tags; t++) {
+            fix.append(5000 + t).append('=').append("V").append(random.nextInt(100_000)).append(SOH);
+        }
+        fix.append("10=").append(String.format("%03d", random.nextInt(256))).append(SOH);
+
+        return "2025-12-05T06:00:00.538527 client INFO c.c.i.c.u.FixMSFLogger BLPCGAG parse: " + fix;
+    }
+}
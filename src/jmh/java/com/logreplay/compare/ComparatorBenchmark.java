@@ -0,0 +1,108 @@
+package com.logreplay.compare;
+
+import com.logreplay.bench.FixCorpus;
+import com.logreplay.fix.FixTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FIXComparator entry points, matching and mismatching pairs.
+ *
+ * - compare: String pairs, the Solace path (ThreadLocal tokenizers, TagList)
+ * - compareOriginalTags: byte pairs, the matching service path
+ * - extractOrderId: full log line, the index path
+ *
+ * A matching pair must allocate nothing; a mismatching one only its diff map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ComparatorBenchmark {
+
+    @Param({ "1024" })
+    int messages;
+
+    @Param({ "20", "60" })
+    int tags;
+
+    private final FIXComparator comparator = new FIXComparator();
+    private final FixTokenizer original = new FixTokenizer();
+    private final FixTokenizer replay = new FixTokenizer();
+
+    private String[] lines;
+    private String[] originals;
+    private String[] matching;
+    private String[] mismatching;
+    private byte[][] originalBytes;
+    private byte[][] matchingBytes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> orig = FixCorpus.originals(messages, tags, FixCorpus.SEED);
+        List<String> same = FixCorpus.replays(messages, tags, FixCorpus.SEED, 0);
+        List<String> diff = FixCorpus.replays(messages, tags, FixCorpus.SEED, 100);
+
+        lines = orig.toArray(new String[0]);
+        originals = new String[messages];
+        matching = new String[messages];
+        mismatching = new String[messages];
+        originalBytes = new byte[messages][];
+        matchingBytes = new byte[messages][];
+        for (int i = 0; i < messages; i++) {
+            originals[i] = FixCorpus.fixOf(orig.get(i));
+            matching[i] = FixCorpus.fixOf(same.get(i));
+            mismatching[i] = FixCorpus.fixOf(diff.get(i));
+            originalBytes[i] = originals[i].getBytes(StandardCharsets.US_ASCII);
+            matchingBytes[i] = matching[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1 == messages) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Map<String, String[]> compareMatch() {
+        int i = nextIndex();
+        return comparator.compare(originals[i], matching[i]);
+    }
+
+    @Benchmark
+    public Map<String, String[]> compareMismatch() {
+        int i = nextIndex();
+        return comparator.compare(originals[i], mismatching[i]);
+    }
+
+    @Benchmark
+    public Map<String, String[]> compareOriginalTagsMatch() {
+        int i = nextIndex();
+        byte[] o = originalBytes[i];
+        byte[] r = matchingBytes[i];
+        return comparator.compareOriginalTags(original.wrap(o, 0, o.length), replay.wrap(r, 0, r.length));
+    }
+
+    @Benchmark
+    public String extractOrderId() {
+        return FIXComparator.extractOrderId(lines[nextIndex()]);
+    }
+}
@@ -0,0 +1,98 @@
+package com.logreplay.fix;
+
+import com.logreplay.bench.FixCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FixTokenizer over the three sources it is fed in production: heap bytes
+ * (matching service store), a direct buffer (mapped logs) and a String
+ * (Solace payloads, copied into the scratch array). With -prof gc every
+ * path must report ~0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenizerBenchmark {
+
+    @Param({ "1024" })
+    int messages;
+
+    @Param({ "20", "60" })
+    int tags;
+
+    private final FixTokenizer tokenizer = new FixTokenizer();
+    private String[] strings;
+    private byte[][] bytes;
+    private ByteBuffer[] direct;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> lines = FixCorpus.originals(messages, tags, FixCorpus.SEED);
+        strings = new String[lines.size()];
+        bytes = new byte[lines.size()][];
+        direct = new ByteBuffer[lines.size()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = FixCorpus.fixOf(lines.get(i));
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+            direct[i] = ByteBuffer.allocateDirect(bytes[i].length).put(bytes[i]).flip();
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1 == strings.length) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public long scanBytes() {
+        byte[] src = bytes[nextIndex()];
+        return scan(tokenizer.wrap(src, 0, src.length));
+    }
+
+    @Benchmark
+    public long scanDirectBuffer() {
+        ByteBuffer src = direct[nextIndex()];
+        return scan(tokenizer.wrap(src, 0, src.limit()));
+    }
+
+    @Benchmark
+    public long scanString() {
+        return scan(tokenizer.wrap(strings[nextIndex()]));
+    }
+
+    @Benchmark
+    public int findSymbol() {
+        byte[] src = bytes[nextIndex()];
+        tokenizer.wrap(src, 0, src.length);
+        return tokenizer.find(55) ? tokenizer.valueLength() : 0;
+    }
+
+    private static long scan(FixTokenizer tokenizer) {
+        long sum = 0;
+        tokenizer.seekBeginString();
+        while (tokenizer.next()) {
+            sum += tokenizer.tag() + tokenizer.valueLength();
+        }
+        return sum;
+    }
+}
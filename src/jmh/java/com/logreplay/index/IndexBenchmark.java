@@ -0,0 +1,95 @@
+package com.logreplay.index;
+
+import com.logreplay.bench.FixCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimpleLogIndex build (parallel scan of a synthetic log) and lookup, for
+ * every storage mode. The key defaults to 37/11 so lookups hit one chain
+ * per order; -p key=55 reproduces the engine default with long chains.
+ *
+ * build is reported in ms/op; divide by messages for the per-message cost.
+ * The index's build banners are discarded (System.out is swapped out for
+ * the trial), so console I/O is neither measured nor flooding the output.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IndexBenchmark {
+
+    @Param({ "100000" })
+    int messages;
+
+    @Param({ "20", "60" })
+    int tags;
+
+    @Param({ "IN_MEMORY", "MAPPED", "OFF_HEAP", "COMPACT" })
+    SimpleLogIndex.Mode mode;
+
+    @Param({ "37/11" })
+    String key;
+
+    private Path log;
+    private KeySpec keySpec;
+    private SimpleLogIndex index;
+    private String[] keys;
+    private int next;
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        List<String> lines = FixCorpus.originals(messages, tags, FixCorpus.SEED);
+        log = FixCorpus.write(lines, "index-bench");
+        keySpec = KeySpec.parse(key);
+        index = new SimpleLogIndex("BENCH", log.toString(), mode, keySpec);
+
+        keys = new String[lines.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = index.keyOf(FixCorpus.fixOf(lines.get(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Files.deleteIfExists(log);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SimpleLogIndex build() {
+        return new SimpleLogIndex("BENCH", log.toString(), mode, keySpec);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String lookup() {
+        int i = next;
+        next = (i + 1 == keys.length) ? 0 : i + 1;
+        return index.getMessage(keys[i]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.logreplay.matching;
+
+import com.logreplay.bench.FixCorpus;
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.index.KeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline comparison over a synthetic original/replay pair.
+ *
+ * - scan: FixLogReader plus key extraction, the floor every mode pays
+ * - compare: MatchingService.compare end to end (mode from
+ *   -Dreplay.match.mode, passed with -jvmArgsAppend)
+ *
+ * Reported in ms/op; divide by messages for the per-line cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MatchingBenchmark {
+
+    private static final KeySpec KEY = KeySpec.parse("37/11");
+
+    @Param({ "100000" })
+    int messages;
+
+    @Param({ "20", "60" })
+    int tags;
+
+    @Param({ "5" })
+    int mismatchPercent;
+
+    private Path original;
+    private Path replay;
+
+    @Setup
+    public void setup() throws IOException {
+        original = FixCorpus.write(FixCorpus.originals(messages, tags, FixCorpus.SEED), "match-orig");
+        replay = FixCorpus.write(FixCorpus.replays(messages, tags, FixCorpus.SEED, mismatchPercent), "match-replay");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(original);
+        Files.deleteIfExists(replay);
+    }
+
+    @Benchmark
+    public int scan() throws IOException {
+        int keys = 0;
+        try (FixLogReader reader = new FixLogReader(original, 8 << 20)) {
+            FixTokenizer tokenizer = new FixTokenizer();
+            while (reader.next()) {
+                if (KEY.extract(reader.wrap(tokenizer)) != null) {
+                    keys++;
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Benchmark
+    public void compare(Blackhole blackhole) {
+        MatchingService.compare(original.toString(), replay.toString(), blackhole::consume);
+    }
+}
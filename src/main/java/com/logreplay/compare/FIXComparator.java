@@ -1,163 +1,271 @@
 package com.logreplay.compare;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import com.logreplay.diag.Diagnostics;
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.index.TagDictionary;
+
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Zero-Allocation FIX Message Comparator
  * 
  * Design:
- * - In-place parsing (no split())
- * - Reusable buffers
+ * - In-place parsing (FixTokenizer, no split())
+ * - Tags as int in reusable sorted arrays (TagList), no String keys
+ * - Single linear merge-join over both sorted tag lists
  * - Only creates diff map if mismatch found
+ * - Dictionary-encoded originals (index COMPACT mode): coded fields are
+ *   compared by code, the replayed value is looked up in place
  * - Ignores dynamic tags (SendingTime, BodyLength, Checksum)
  */
 public class FIXComparator {
 
     // Tags to ignore (dynamic/non-business fields)
-    private static final String[] IGNORED_TAGS = { "9", "10", "52" };
+    private static final int[] IGNORED_TAGS = { 9, 10, 52 };
+
+    private static final int SYMBOL_TAG = 55;
+    private static final byte[] EMPTY = new byte[0];
 
-    // Reusable tag map to avoid allocations
-    private final ThreadLocal<Map<String, String>> tagMapPool = ThreadLocal.withInitial(() -> new HashMap<>(64));
+    // Reusable tag lists to avoid allocations (one per side of the comparison)
+    private final ThreadLocal<TagList> origTagsPool = ThreadLocal.withInitial(TagList::new);
+    private final ThreadLocal<TagList> replayTagsPool = ThreadLocal.withInitial(TagList::new);
+
+    // Shared byte-level tokenizers (one per thread, plus one for the replay side)
+    private static final ThreadLocal<FixTokenizer> TOKENIZER = ThreadLocal.withInitial(FixTokenizer::new);
+    private static final ThreadLocal<FixTokenizer> REPLAY_TOKENIZER = ThreadLocal.withInitial(FixTokenizer::new);
 
     /**
      * Compare two FIX messages
      * Returns null if match, or Map<Tag, [Original, Replay]> if mismatch
      */
     public Map<String, String[]> compare(String original, String replay) {
-        // VISUAL DEBUG: Print full messages with Pipe delimiters
-        System.out.println("\n============ COMPARISON START ============");
-        System.out.println(">> ORIG:   " + original.replace('\u0001', '|'));
-        System.out.println(">> REPLAY: " + replay.replace('\u0001', '|'));
-        System.out.println("------------------------------------------");
+        return compare(original, replay, Diagnostics.TABLE_ENABLED);
+    }
+
+    /**
+     * Same as compare(original, replay); trace = true writes the full messages
+     * and the tag table to the diagnostics sink (TABLE level).
+     */
+    public Map<String, String[]> compare(String original, String replay, boolean trace) {
+        StringBuilder table = null;
+        if (trace) {
+            // VISUAL DEBUG: Full messages with Pipe delimiters
+            table = new StringBuilder(4096);
+            table.append("\n============ COMPARISON START ============\n");
+            table.append(">> ORIG:   ").append(original.replace('\u0001', '|')).append('\n');
+            table.append(">> REPLAY: ").append(replay.replace('\u0001', '|')).append('\n');
+            table.append("------------------------------------------\n");
+        }
 
-        // Parse both messages
-        Map<String, String> origTags = parseToMap(original);
-        Map<String, String> replayTags = parseToMap(replay);
+        return compare(wrapFix(TOKENIZER.get(), original), wrapFix(REPLAY_TOKENIZER.get(), replay), table);
+    }
+
+    /**
+     * Same as compare(original, replay, trace) for an original kept as a
+     * dictionary-encoded record (SimpleLogIndex COMPACT mode). Coded fields
+     * match when the replayed value has the same code: one hash probe, no
+     * String, and a value the dictionary never saw is a mismatch outright.
+     */
+    public Map<String, String[]> compare(TagDictionary dictionary, byte[] original, String replay, boolean trace) {
+        if (trace) {
+            return compare(dictionary.decode(original), replay, true);
+        }
+        FixTokenizer source = TOKENIZER.get().wrap(original, 0, original.length);
+        FixTokenizer replayTokenizer = wrapFix(REPLAY_TOKENIZER.get(), replay);
+        TagList origTags = origTagsPool.get();
+        TagList replayTags = replayTagsPool.get();
+        int origCount = origTags.load(original, dictionary);
+        int replayCount = replayTags.load(replayTokenizer);
+        return merge(source, origTags, origCount, dictionary, original, replayTokenizer, replayTags, replayCount, null);
+    }
+
+    /**
+     * Compare the remaining fields of two tokenizers (e.g. positioned on "8=").
+     * Returns null if match, or Map<Tag, [Original, Replay]> if mismatch
+     */
+    public Map<String, String[]> compare(FixTokenizer original, FixTokenizer replay) {
+        return compare(original, replay, null);
+    }
 
-        System.out.println(
-                ">> [COMPARE] Orig Tags Parsed: " + origTags.size() + " | Replay Tags Parsed: " + replayTags.size());
+    /**
+     * Original-driven comparison (offline MatchingService rules): only tags
+     * present in the original are checked, and the dynamic tags (SendingTime,
+     * BodyLength, Checksum) are ignored. Extra replay tags are not reported.
+     * Returns null if match, or Map<Tag, [Original, Replay or "MISSING"]>.
+     */
+    public Map<String, String[]> compareOriginalTags(FixTokenizer original, FixTokenizer replay) {
+        TagList origTags = origTagsPool.get();
+        TagList replayTags = replayTagsPool.get();
+        int origCount = origTags.load(original);
+        int replayCount = replayTags.load(replay);
 
         Map<String, String[]> diffs = null; // Only create if needed
 
-        // 1. Get Union of All Tags to compare everything
-        Set<String> allTags = new HashSet<>();
-        allTags.addAll(origTags.keySet());
-        allTags.addAll(replayTags.keySet());
-
-        // 2. Iterate and Compare (Structured Table)
-        System.out.println("----------------------------------------------------------------------------------");
-        System.out.println(String.format("| %-5s | %-25s | %-25s | %-12s |", "TAG", "ORIGINAL", "REPLAY", "STATUS"));
-        System.out.println("----------------------------------------------------------------------------------");
-
-        // Sort tags numerically/alphabetically for cleaner reading
-        List<String> sortedTags = new ArrayList<>(allTags);
-        Collections.sort(sortedTags, (a, b) -> {
-            try {
-                return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
-            } catch (NumberFormatException e) {
-                return a.compareTo(b);
+        int j = 0;
+        for (int i = 0; i < origCount; i++) {
+            int tag = origTags.tag(i);
+            i = origTags.lastOfRun(i); // Last occurrence of a repeated tag wins
+            if (isIgnored(tag)) {
+                continue;
+            }
+            while (j < replayCount && replayTags.tag(j) < tag) {
+                j++;
+            }
+            if (j == replayCount || replayTags.tag(j) != tag) {
+                if (diffs == null)
+                    diffs = new HashMap<>();
+                diffs.put(Integer.toString(tag), new String[] { value(original, origTags, i), "MISSING" });
+                continue;
+            }
+            int rj = replayTags.lastOfRun(j);
+            if (!original.valueEquals(origTags.valueOffset(i), origTags.valueLength(i), replay,
+                    replayTags.valueOffset(rj), replayTags.valueLength(rj))) {
+                if (diffs == null)
+                    diffs = new HashMap<>();
+                diffs.put(Integer.toString(tag),
+                        new String[] { value(original, origTags, i), value(replay, replayTags, rj) });
             }
-        });
+            j = rj + 1;
+        }
+        return diffs; // null if perfect match
+    }
 
-        for (String tag : sortedTags) {
-            String origVal = origTags.get(tag);
-            String replayVal = replayTags.get(tag);
-            String status;
+    private Map<String, String[]> compare(FixTokenizer original, FixTokenizer replay, StringBuilder table) {
+        TagList origTags = origTagsPool.get();
+        TagList replayTags = replayTagsPool.get();
+        int origCount = origTags.load(original);
+        int replayCount = replayTags.load(replay);
+        return merge(original, origTags, origCount, null, null, replay, replayTags, replayCount, table);
+    }
+
+    /**
+     * Merge-join of the loaded tag lists. dictionary / record are set when
+     * the original is a dictionary-encoded record (original wraps it).
+     */
+    private Map<String, String[]> merge(FixTokenizer original, TagList origTags, int origCount,
+            TagDictionary dictionary, byte[] record, FixTokenizer replay, TagList replayTags, int replayCount,
+            StringBuilder table) {
+        if (table != null) {
+            table.append(">> [COMPARE] Orig Tags Parsed: ").append(origCount).append(" | Replay Tags Parsed: ")
+                    .append(replayCount).append('\n');
+            // Structured Table, rows come out of the merge already sorted by tag
+            table.append("----------------------------------------------------------------------------------\n");
+            table.append(String.format("| %-5s | %-25s | %-25s | %-12s |%n", "TAG", "ORIGINAL", "REPLAY", "STATUS"));
+            table.append("----------------------------------------------------------------------------------\n");
+        }
+
+        Map<String, String[]> diffs = null; // Only create if needed
 
-            // Truncate long values for table display
-            String displayOrig = (origVal == null) ? "MISSING"
-                    : (origVal.length() > 25 ? origVal.substring(0, 22) + "..." : origVal);
-            String displayReplay = (replayVal == null) ? "MISSING"
-                    : (replayVal.length() > 25 ? replayVal.substring(0, 22) + "..." : replayVal);
+        // Merge-join: one linear pass over both sorted lists
+        int i = 0;
+        int j = 0;
+        while (i < origCount || j < replayCount) {
+            int origTag = (i < origCount) ? origTags.tag(i) : Integer.MAX_VALUE;
+            int replayTag = (j < replayCount) ? replayTags.tag(j) : Integer.MAX_VALUE;
 
-            if (origVal == null) {
-                status = "EXTRA (R)";
+            // Last occurrence of a repeated tag wins
+            int oi = (origTag <= replayTag) ? origTags.lastOfRun(i) : -1;
+            int rj = (replayTag <= origTag) ? replayTags.lastOfRun(j) : -1;
+
+            String status;
+            if (rj == -1) {
+                status = "MISSING (R)";
                 if (diffs == null)
                     diffs = new HashMap<>();
-                diffs.put(tag, new String[] { "MISSING", replayVal });
-            } else if (replayVal == null) {
-                status = "MISSING (R)";
+                diffs.put(Integer.toString(origTag),
+                        new String[] { value(original, origTags, oi, dictionary, record), "MISSING" });
+            } else if (oi == -1) {
+                status = "EXTRA (R)";
                 if (diffs == null)
                     diffs = new HashMap<>();
-                diffs.put(tag, new String[] { origVal, "MISSING" });
-            } else if (origVal.equals(replayVal)) {
+                diffs.put(Integer.toString(replayTag), new String[] { "MISSING", value(replay, replayTags, rj) });
+            } else if (valueEquals(original, origTags, oi, dictionary, record, replay, replayTags, rj)) {
                 status = "MATCH";
             } else {
                 status = "MISMATCH";
                 if (diffs == null)
                     diffs = new HashMap<>();
-                diffs.put(tag, new String[] { origVal, replayVal });
+                diffs.put(Integer.toString(origTag), new String[] {
+                        value(original, origTags, oi, dictionary, record), value(replay, replayTags, rj) });
+            }
+
+            if (table != null) {
+                // Truncate long values for table display
+                String displayOrig = (oi == -1) ? "MISSING"
+                        : truncate(value(original, origTags, oi, dictionary, record));
+                String displayReplay = (rj == -1) ? "MISSING" : truncate(value(replay, replayTags, rj));
+                table.append(String.format("| %-5s | %-25s | %-25s | %-12s |%n", (oi == -1) ? replayTag : origTag,
+                        displayOrig, displayReplay, status));
             }
 
-            System.out.println(
-                    String.format("| %-5s | %-25s | %-25s | %-12s |", tag, displayOrig, displayReplay, status));
+            if (oi != -1)
+                i = oi + 1;
+            if (rj != -1)
+                j = rj + 1;
+        }
+
+        if (table != null) {
+            table.append("----------------------------------------------------------------------------------\n");
+            Diagnostics.log(table);
         }
-        System.out.println("----------------------------------------------------------------------------------\n");
 
         return diffs; // null if perfect match
     }
 
     /**
-     * Fast FIX message parsing - Zero-copy approach
-     * Reuses ThreadLocal map to avoid allocations
+     * Points the tokenizer at the FIX portion of the message, or at nothing if
+     * there is none.
      */
-    private Map<String, String> parseToMap(String message) {
-        Map<String, String> map = tagMapPool.get();
-        map.clear(); // Reuse existing map
-
-        // Extract FIX portion
-        int fixStart = message.indexOf("8=FIX");
-        if (fixStart == -1) {
-            System.out.println(">> [PARSER WARNING] No '8=FIX' found in string: "
-                    + message.substring(0, Math.min(20, message.length())));
-            return map;
-        }
-
-        String payload = message.substring(fixStart);
-        int len = payload.length();
-        int start = 0;
-
-        // Manual Tokenizer Loop: Iterates chars to find Delimiters
-        for (int i = 0; i < len; i++) {
-            char c = payload.charAt(i);
-            // Delimiter Check: SOH or Pipe or newline
-            if (c == '\u0001' || c == '|' || c == '\n' || c == '\r') {
-                parseAndPut(payload, start, i, map);
-                start = i + 1;
+    private static FixTokenizer wrapFix(FixTokenizer tokenizer, String message) {
+        if (!tokenizer.wrap(message).seekBeginString()) {
+            if (Diagnostics.MESSAGE_ENABLED) {
+                Diagnostics.log(">> [PARSER WARNING] No '8=FIX' found in string: "
+                        + message.substring(0, Math.min(20, message.length())));
             }
+            tokenizer.wrap(EMPTY, 0, 0);
         }
-        // Handle last incomplete token
-        if (start < len) {
-            parseAndPut(payload, start, len, map);
-        }
+        return tokenizer;
+    }
 
-        return map;
+    private static String value(FixTokenizer source, TagList tags, int index) {
+        return source.asString(tags.valueOffset(index), tags.valueLength(index));
     }
 
-    private void parseAndPut(String src, int start, int end, Map<String, String> map) {
-        if (start >= end)
-            return; // Empty token
-        String token = src.substring(start, end);
-        int eqPos = token.indexOf('=');
-        if (eqPos > 0) { // Tag must be at least 1 char
-            String tag = token.substring(0, eqPos);
-            String value = token.substring(eqPos + 1);
-            map.put(tag, value);
+    /**
+     * Original-side value: coded fields come from the dictionary.
+     */
+    private static String value(FixTokenizer source, TagList tags, int index, TagDictionary dictionary,
+            byte[] record) {
+        if (tags.valueLength(index) == TagList.CODED) {
+            int position = tags.valueOffset(index);
+            return dictionary.valueOf(TagDictionary.slotAt(record, position), TagDictionary.codeAt(record, position));
         }
+        return value(source, tags, index);
+    }
+
+    private static boolean valueEquals(FixTokenizer original, TagList origTags, int oi, TagDictionary dictionary,
+            byte[] record, FixTokenizer replay, TagList replayTags, int rj) {
+        if (origTags.valueLength(oi) == TagList.CODED) {
+            int position = origTags.valueOffset(oi);
+            int slot = TagDictionary.slotAt(record, position);
+            return dictionary.codeOf(slot, replay, replayTags.valueOffset(rj), replayTags.valueLength(rj))
+                    == TagDictionary.codeAt(record, position);
+        }
+        return original.valueEquals(origTags.valueOffset(oi), origTags.valueLength(oi), replay,
+                replayTags.valueOffset(rj), replayTags.valueLength(rj));
+    }
+
+    private static String truncate(String value) {
+        return value.length() > 25 ? value.substring(0, 22) + "..." : value;
     }
 
     /**
      * Check if tag should be ignored
      */
-    private static boolean isIgnored(String tag) {
-        for (String ignored : IGNORED_TAGS) {
-            if (ignored.equals(tag)) {
+    private static boolean isIgnored(int tag) {
+        for (int ignored : IGNORED_TAGS) {
+            if (ignored == tag) {
                 return true;
             }
         }
@@ -166,26 +274,15 @@ public class FIXComparator {
 
     /**
      * Extract Tag 55 (Symbol) from FIX message (Modified for Testing)
+     * Delimiters are handled by the tokenizer, the message is not rewritten.
      */
     public static String extractOrderId(String message) {
-        int fixStart = message.indexOf("8=FIX");
-        if (fixStart == -1) {
+        FixTokenizer tokenizer = TOKENIZER.get().wrap(message);
+        if (!tokenizer.seekBeginString()) {
             return null;
         }
 
-        // Normalize message delimiters to ensure we find the tag
-        // 1. Convert pipe '|' to strict SOH '\u0001'
-        // 2. Convert literal "^A" to strict SOH '\u0001'
-        String normalized = message.replace('|', '\u0001').replace("^A", "\u0001");
-
         // Look for Tag 55 (Symbol)
-        int tag55 = normalized.indexOf("\u000155=", fixStart);
-        if (tag55 != -1) {
-            int start = tag55 + 4; // Skip ^A55=
-            int end = normalized.indexOf("\u0001", start);
-            return normalized.substring(start, end == -1 ? normalized.length() : end);
-        }
-
-        return null;
+        return tokenizer.find(SYMBOL_TAG) ? tokenizer.valueAsString() : null;
     }
 }
@@ -0,0 +1,116 @@
+package com.logreplay.compare;
+
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.index.TagDictionary;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, primitive view of one message's fields.
+ *
+ * Each field is packed as (tag << 32 | arrival ordinal) in a long[], so a
+ * single primitive sort orders by tag and keeps duplicates in arrival order.
+ * Values stay as (offset, length) slices of the tokenizer's source.
+ * Arrays grow on demand and are reused, so steady state is allocation-free.
+ * Fields of a dictionary-encoded record point at their coded bytes, with
+ * length CODED.
+ */
+final class TagList {
+
+    static final int CODED = -1;
+    private static final byte SOH = 0x01;
+
+    private long[] entries = new long[64];
+    private int[] offsets = new int[64];
+    private int[] lengths = new int[64];
+    private int count;
+
+    /**
+     * Loads every remaining field of the tokenizer, sorted by tag.
+     */
+    int load(FixTokenizer tokenizer) {
+        count = 0;
+        while (tokenizer.next()) {
+            add(tokenizer.tag(), tokenizer.valueOffset(), tokenizer.valueLength());
+        }
+        Arrays.sort(entries, 0, count);
+        return count;
+    }
+
+    /**
+     * Loads every field of a dictionary-encoded record (SOH delimiters
+     * only), sorted by tag. Fields without a numeric tag are skipped, as
+     * the tokenizer does.
+     */
+    int load(byte[] record, TagDictionary dictionary) {
+        count = 0;
+        int position = 0;
+        while (position < record.length) {
+            if (record[position] == TagDictionary.MARKER) {
+                add(dictionary.tagOf(TagDictionary.slotAt(record, position)), position, CODED);
+                position += TagDictionary.CODED_LENGTH + 1; // and its SOH
+                continue;
+            }
+            int end = position;
+            while (end < record.length && record[end] != SOH) {
+                end++;
+            }
+            int tag = 0;
+            int i = position;
+            while (i < end && i - position < 9 && record[i] >= '0' && record[i] <= '9') {
+                tag = tag * 10 + (record[i++] - '0');
+            }
+            if (i > position && i < end && record[i] == '=') {
+                add(tag, i + 1, end - i - 1);
+            }
+            position = end + 1;
+        }
+        Arrays.sort(entries, 0, count);
+        return count;
+    }
+
+    private void add(int tag, int offset, int length) {
+        if (count == entries.length) {
+            grow();
+        }
+        entries[count] = ((long) tag << 32) | count;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int tag(int i) {
+        return (int) (entries[i] >> 32);
+    }
+
+    int valueOffset(int i) {
+        return offsets[(int) entries[i]];
+    }
+
+    int valueLength(int i) {
+        return lengths[(int) entries[i]];
+    }
+
+    /**
+     * Last index of the run of equal tags starting at i. A repeated tag keeps
+     * its last value, same as a Map put would.
+     */
+    int lastOfRun(int i) {
+        int tag = tag(i);
+        while (i + 1 < count && tag(i + 1) == tag) {
+            i++;
+        }
+        return i;
+    }
+
+    private void grow() {
+        int capacity = entries.length * 2;
+        entries = Arrays.copyOf(entries, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+}
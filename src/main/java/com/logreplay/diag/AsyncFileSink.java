@@ -0,0 +1,91 @@
+package com.logreplay.diag;
+
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous File Sink
+ *
+ * Design:
+ * - Callers only enqueue into a lock-free bounded queue (no I/O on the
+ *   replay threads).
+ * - A single daemon thread drains the queue into a large buffered writer.
+ * - When the queue is full the entry is dropped and counted instead of
+ *   blocking the caller; the drop count is reported on close.
+ */
+public class AsyncFileSink implements DiagSink {
+
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final long IDLE_PARK_NANOS = 1_000_000; // 1ms
+
+    private final ManyToOneConcurrentArrayQueue<String> queue = new ManyToOneConcurrentArrayQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Writer writer;
+    private final Thread writerThread;
+    private final String path;
+    private volatile boolean running = true;
+
+    public AsyncFileSink(String path) throws IOException {
+        this.path = path;
+        this.writer = new BufferedWriter(new FileWriter(path, true), WRITE_BUFFER);
+        this.writerThread = new Thread(this::drainLoop, "diag-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(CharSequence entry) {
+        if (!queue.offer(entry.toString())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            int drained = queue.drain(this::append);
+            if (drained == 0) {
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flush();
+    }
+
+    private void append(String entry) {
+        try {
+            writer.write(entry);
+            writer.write('\n');
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("[Diag] Failed to flush " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(5000);
+            writer.close();
+        } catch (InterruptedException | IOException e) {
+            System.err.println("[Diag] Failed to close " + path + ": " + e.getMessage());
+        }
+        if (dropped.get() > 0) {
+            System.err.println("[Diag] " + dropped.get() + " entries dropped (queue full) while writing " + path);
+        }
+    }
+}
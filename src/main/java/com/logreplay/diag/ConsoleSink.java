@@ -0,0 +1,18 @@
+package com.logreplay.diag;
+
+/**
+ * Writes straight to stdout. Fine for development, too slow for per-message
+ * output at production rates.
+ */
+public class ConsoleSink implements DiagSink {
+
+    @Override
+    public void write(CharSequence entry) {
+        System.out.println(entry);
+    }
+
+    @Override
+    public void close() {
+        System.out.flush();
+    }
+}
@@ -0,0 +1,11 @@
+package com.logreplay.diag;
+
+/**
+ * Diagnostic verbosity, each level includes the ones before it.
+ */
+public enum DiagLevel {
+    OFF, // Errors only
+    SUMMARY, // Startup, index build and periodic progress lines
+    MESSAGE, // One line per replayed message (lookup, result)
+    TABLE // Full messages and tag-by-tag tables
+}
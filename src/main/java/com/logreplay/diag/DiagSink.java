@@ -0,0 +1,15 @@
+package com.logreplay.diag;
+
+/**
+ * Destination for diagnostic output. Implementations must be thread-safe:
+ * the engine, comparator and index builders all write concurrently.
+ */
+public interface DiagSink {
+
+    /**
+     * Writes one entry (a line or a whole table), a line break is appended.
+     */
+    void write(CharSequence entry);
+
+    void close();
+}
@@ -0,0 +1,61 @@
+package com.logreplay.diag;
+
+import java.io.IOException;
+
+/**
+ * Level-Gated Diagnostics
+ *
+ * Configured once at startup from system properties:
+ * - replay.diag.level: OFF | SUMMARY | MESSAGE | TABLE (default SUMMARY)
+ * - replay.diag.sink: console | file:path/to/diag.log (default console)
+ * - replay.diag.sampleEvery: trace 1 in N orders at MESSAGE/TABLE (default 1)
+ *
+ * The level flags are static finals, so the JIT folds a disabled
+ * "if (Diagnostics.TABLE_ENABLED)" away: nothing is formatted or allocated
+ * on the hot path unless the level is on.
+ */
+public final class Diagnostics {
+
+    public static final DiagLevel LEVEL = DiagLevel
+            .valueOf(System.getProperty("replay.diag.level", "SUMMARY").toUpperCase());
+
+    public static final boolean SUMMARY_ENABLED = LEVEL.compareTo(DiagLevel.SUMMARY) >= 0;
+    public static final boolean MESSAGE_ENABLED = LEVEL.compareTo(DiagLevel.MESSAGE) >= 0;
+    public static final boolean TABLE_ENABLED = LEVEL.compareTo(DiagLevel.TABLE) >= 0;
+
+    private static final int SAMPLE_EVERY = Math.max(1, Integer.getInteger("replay.diag.sampleEvery", 1));
+
+    private static final DiagSink SINK = createSink(System.getProperty("replay.diag.sink", "console"));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SINK::close, "diag-close"));
+    }
+
+    private Diagnostics() {
+    }
+
+    /**
+     * True if this order is in the traced sample. Hash based, so every
+     * message of a sampled order is traced.
+     */
+    public static boolean sampled(String orderId) {
+        return SAMPLE_EVERY == 1 || (orderId != null && Math.floorMod(orderId.hashCode(), SAMPLE_EVERY) == 0);
+    }
+
+    public static void log(CharSequence entry) {
+        SINK.write(entry);
+    }
+
+    private static DiagSink createSink(String spec) {
+        if (spec.startsWith("file:")) {
+            String path = spec.substring("file:".length());
+            try {
+                System.out.println("[Diag] Writing " + LEVEL + " diagnostics to " + path);
+                return new AsyncFileSink(path);
+            } catch (IOException e) {
+                System.err.println("[Diag] Cannot open " + path + ", falling back to console: " + e.getMessage());
+            }
+        }
+        return new ConsoleSink();
+    }
+}
@@ -0,0 +1,282 @@
+package com.logreplay.fix;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flyweight FIX Tokenizer
+ *
+ * Design:
+ * - Walks a byte[] or ByteBuffer in place; one instance is reused per thread.
+ * - Tags are exposed as int, values as (offset, length) slices of the source.
+ * - Understands SOH, "|" and literal "^A" delimiters (plus line breaks) as
+ *   they appear in the logs, so nothing has to be rewritten first.
+ * - Produces no garbage: Strings are only created when a caller asks for one.
+ *
+ * Usage:
+ *   tokenizer.wrap(bytes, 0, len);
+ *   while (tokenizer.next()) { int tag = tokenizer.tag(); ... }
+ */
+public final class FixTokenizer {
+
+    public static final int NO_TAG = Integer.MIN_VALUE;
+
+    private static final byte SOH = 0x01;
+    private static final byte[] BEGIN_STRING = "8=FIX".getBytes(StandardCharsets.US_ASCII);
+
+    // Bytes that may end a value: SOH, '|', line breaks, and '^' (of "^A")
+    private static final boolean[] STOP = new boolean[256];
+    static {
+        STOP[SOH] = true;
+        STOP['|'] = true;
+        STOP['\n'] = true;
+        STOP['\r'] = true;
+        STOP['^'] = true;
+    }
+
+    // Source: exactly one of array / buffer is set
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int start;
+    private int limit;
+
+    // Cursor + current field
+    private int position;
+    private int tag = NO_TAG;
+    private int valueOffset;
+    private int valueLength;
+
+    // Backing store for wrap(CharSequence) and copies out of straddling regions
+    private byte[] scratch = new byte[1024];
+
+    public FixTokenizer wrap(byte[] src, int offset, int length) {
+        this.array = src;
+        this.buffer = null;
+        return reset(offset, offset + length);
+    }
+
+    public FixTokenizer wrap(ByteBuffer src, int offset, int length) {
+        if (src.hasArray()) {
+            return wrap(src.array(), src.arrayOffset() + offset, length);
+        }
+        this.array = null;
+        this.buffer = src;
+        return reset(offset, offset + length);
+    }
+
+    /**
+     * Wraps a String (or any CharSequence) by copying its chars into the
+     * reusable scratch array. FIX is ASCII, so one char maps to one byte.
+     */
+    @SuppressWarnings("deprecation")
+    public FixTokenizer wrap(CharSequence src) {
+        int length = src.length();
+        byte[] dst = scratch(length);
+        if (src instanceof String) {
+            // Low-byte copy without an intermediate array (a bulk copy for Latin-1 Strings)
+            ((String) src).getBytes(0, length, dst, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst[i] = (byte) src.charAt(i);
+            }
+        }
+        return wrap(dst, 0, length);
+    }
+
+    /**
+     * Reusable array of at least the given capacity, for callers that have to
+     * copy bytes before wrapping them. Contents are overwritten by
+     * wrap(CharSequence).
+     */
+    public byte[] scratch(int capacity) {
+        if (scratch.length < capacity) {
+            scratch = new byte[Math.max(capacity, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    private FixTokenizer reset(int from, int to) {
+        this.start = from;
+        this.limit = to;
+        rewind();
+        return this;
+    }
+
+    /**
+     * Moves the cursor back to the start of the wrapped region.
+     */
+    public void rewind() {
+        this.position = start;
+        this.tag = NO_TAG;
+        this.valueOffset = 0;
+        this.valueLength = 0;
+    }
+
+    /**
+     * Skips any log prefix so that the next field read is "8=".
+     * Returns false if the region contains no FIX message.
+     */
+    public boolean seekBeginString() {
+        int last = limit - BEGIN_STRING.length;
+        for (int i = position; i <= last; i++) {
+            if (byteAt(i) == '8' && matches(i, BEGIN_STRING)) {
+                position = i;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advances to the next well-formed "tag=value" field.
+     * Tokens without a numeric tag (log noise, empty fields) are skipped.
+     */
+    public boolean next() {
+        while (position < limit) {
+            int parsedTag = parseTag(position);
+            if (parsedTag == NO_TAG) {
+                continue; // parseTag already skipped the token
+            }
+            int valueStart = position;
+            int valueEnd = skipToDelimiter(valueStart);
+            tag = parsedTag;
+            valueOffset = valueStart;
+            valueLength = valueEnd - valueStart;
+            return true;
+        }
+        tag = NO_TAG;
+        return false;
+    }
+
+    /**
+     * Scans forward from the cursor for the next occurrence of the tag.
+     * On success the tokenizer is positioned on that field.
+     */
+    public boolean find(int wanted) {
+        while (next()) {
+            if (tag == wanted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    public int valueOffset() {
+        return valueOffset;
+    }
+
+    public int valueLength() {
+        return valueLength;
+    }
+
+    public byte byteAt(int index) {
+        return (array != null) ? array[index] : buffer.get(index);
+    }
+
+    /**
+     * Compares the current value with the current value of another tokenizer.
+     */
+    public boolean valueEquals(FixTokenizer other) {
+        return valueEquals(valueOffset, valueLength, other, other.valueOffset, other.valueLength);
+    }
+
+    /**
+     * Compares two value slices byte by byte.
+     */
+    public boolean valueEquals(int offset, int length, FixTokenizer other, int otherOffset, int otherLength) {
+        if (length != otherLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (byteAt(offset + i) != other.byteAt(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String valueAsString() {
+        return asString(valueOffset, valueLength);
+    }
+
+    /**
+     * Materializes a slice of the wrapped source. Allocates - keep it off the
+     * per-message path unless the String is really needed.
+     */
+    public String asString(int offset, int length) {
+        if (array != null) {
+            return new String(array, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parses "[-]digits=" at from. Leaves position just after '=' and returns
+     * the tag, or skips the whole token and returns NO_TAG.
+     */
+    private int parseTag(int from) {
+        int i = from;
+        boolean negative = false;
+        if (i < limit && byteAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        int value = 0;
+        int digits = 0;
+        while (i < limit) {
+            byte b = byteAt(i);
+            if (b >= '0' && b <= '9' && digits < 9) {
+                value = value * 10 + (b - '0');
+                digits++;
+                i++;
+            } else if (b == '=' && digits > 0) {
+                position = i + 1;
+                return negative ? -value : value;
+            } else {
+                break;
+            }
+        }
+        // Not a field: drop the rest of the token
+        skipToDelimiter(i);
+        return NO_TAG;
+    }
+
+    /**
+     * Moves position past the delimiter that ends the token starting at from
+     * and returns the end of the token.
+     */
+    private int skipToDelimiter(int from) {
+        byte[] src = array;
+        for (int i = from; i < limit; i++) {
+            byte b = (src != null) ? src[i] : buffer.get(i);
+            if (!STOP[b & 0xFF]) {
+                continue; // Plain value byte: one table lookup
+            }
+            if (b != '^') {
+                position = i + 1;
+                return i;
+            }
+            if (i + 1 < limit && byteAt(i + 1) == 'A') {
+                position = i + 2;
+                return i;
+            }
+        }
+        position = limit;
+        return limit;
+    }
+
+    private boolean matches(int at, byte[] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (byteAt(at + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
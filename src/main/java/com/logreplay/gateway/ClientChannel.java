@@ -0,0 +1,218 @@
+package com.logreplay.gateway;
+
+import com.logreplay.metrics.MetricsSnapshot;
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Outbound Queue of One WebSocket Client
+ *
+ * Results only wait here while the client is behind (its previous frame is
+ * still buffered, or it already has results waiting); an up-to-date client
+ * gets the shared frame directly. The queue is bounded and overflows
+ * according to the policy:
+ * - DROP_OLDEST: the oldest waiting result goes
+ * - DROP_MATCH_FIRST: the oldest waiting MATCH goes, the oldest result
+ *   only when no MATCH is left (the dashboard only shows the others)
+ * - CONFLATE: one waiting result per stream + order, the newest wins
+ *   except that a MATCH never replaces a waiting MISMATCH/MISSING; the
+ *   oldest goes when there are more orders than slots
+ * - DISCONNECT: the client is closed and has to reconnect
+ *
+ * Only results passing the client's subscription filter get here or into
+ * its frames. Queue state is owned by the flush thread; the filter is set
+ * by the WebSocket thread and the counters are read by the metrics
+ * reporter.
+ */
+final class ClientChannel {
+
+    enum Policy {
+        DROP_OLDEST, DROP_MATCH_FIRST, CONFLATE, DISCONNECT
+    }
+
+    /**
+     * A waiting result and its arrival order, to merge MATCH and non-MATCH
+     * results back in order (DROP_MATCH_FIRST).
+     */
+    private static final class Queued {
+        final long seq;
+        final ComparisonResult result;
+
+        Queued(long seq, ComparisonResult result) {
+            this.seq = seq;
+            this.result = result;
+        }
+    }
+
+    final WebSocket conn;
+    final String name;
+    private final Policy policy;
+    private final int capacity;
+
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+    private final ArrayDeque<Queued> matches = new ArrayDeque<>(); // DROP_MATCH_FIRST only
+    private final LinkedHashMap<String, Queued> conflated = new LinkedHashMap<>(); // CONFLATE only
+    private long nextSeq;
+    boolean closing;
+    volatile ResultFilter filter = ResultFilter.ALL;
+    volatile ResultCodec.Encoding encoding = ResultCodec.Encoding.JSON;
+
+    // Written by the flush thread only
+    private volatile int queued;
+    private volatile long oldestReceiveNanos;
+    private volatile long droppedCount;
+    private volatile long conflatedCount;
+    private volatile long filteredCount;
+    private volatile long sentResults;
+    private volatile long sentFrames;
+    private volatile long sentBytes;
+
+    ClientChannel(WebSocket conn, Policy policy, int capacity) {
+        this.conn = conn;
+        this.name = String.valueOf(conn.getRemoteSocketAddress());
+        this.policy = policy;
+        this.capacity = capacity;
+    }
+
+    /**
+     * True while the last frame has not been fully written to the socket.
+     */
+    boolean backlogged() {
+        return conn.hasBufferedData();
+    }
+
+    boolean isEmpty() {
+        return queued == 0;
+    }
+
+    /**
+     * Queues a result, applying the overflow policy. Returns false when the
+     * client has to be disconnected (DISCONNECT policy).
+     */
+    boolean offer(ComparisonResult result) {
+        Queued entry = new Queued(nextSeq++, result);
+        switch (policy) {
+            case CONFLATE:
+                offerConflated(entry);
+                break;
+            case DROP_MATCH_FIRST:
+                if (queued == capacity) {
+                    (matches.isEmpty() ? queue : matches).pollFirst();
+                    droppedCount++;
+                }
+                ("MATCH".equals(result.status) ? matches : queue).addLast(entry);
+                break;
+            case DISCONNECT:
+                if (queued == capacity) {
+                    return false;
+                }
+                queue.addLast(entry);
+                break;
+            default:
+                if (queued == capacity) {
+                    queue.pollFirst();
+                    droppedCount++;
+                }
+                queue.addLast(entry);
+        }
+        updateDepth();
+        return true;
+    }
+
+    private void offerConflated(Queued entry) {
+        String key = entry.result.processType + '/' + entry.result.orderId;
+        Queued waiting = conflated.get(key);
+        if (waiting != null) {
+            conflatedCount++;
+            if (!"MATCH".equals(entry.result.status) || "MATCH".equals(waiting.result.status)) {
+                conflated.put(key, new Queued(waiting.seq, entry.result)); // Keeps its place in line
+            }
+            return;
+        }
+        if (conflated.size() == capacity) {
+            Iterator<Queued> oldest = conflated.values().iterator();
+            oldest.next();
+            oldest.remove();
+            droppedCount++;
+        }
+        conflated.put(key, entry);
+    }
+
+    /**
+     * Moves up to max waiting results, oldest first, into out.
+     */
+    void drainTo(List<ComparisonResult> out, int max) {
+        if (policy == Policy.CONFLATE) {
+            Iterator<Queued> it = conflated.values().iterator();
+            while (out.size() < max && it.hasNext()) {
+                out.add(it.next().result);
+                it.remove();
+            }
+        } else {
+            while (out.size() < max && (!queue.isEmpty() || !matches.isEmpty())) {
+                boolean fromMatches = queue.isEmpty()
+                        || (!matches.isEmpty() && matches.peekFirst().seq < queue.peekFirst().seq);
+                out.add((fromMatches ? matches : queue).pollFirst().result);
+            }
+        }
+        updateDepth();
+    }
+
+    void filtered(int results) {
+        filteredCount += results;
+    }
+
+    void sent(int results, int bytes) {
+        sentResults += results;
+        sentFrames++;
+        sentBytes += bytes;
+    }
+
+    void clear() {
+        queue.clear();
+        matches.clear();
+        conflated.clear();
+        updateDepth();
+    }
+
+    private void updateDepth() {
+        queued = queue.size() + matches.size() + conflated.size();
+        Queued oldest = null;
+        if (policy == Policy.CONFLATE) {
+            if (!conflated.isEmpty()) {
+                oldest = conflated.values().iterator().next();
+            }
+        } else {
+            oldest = queue.peekFirst();
+            Queued oldestMatch = matches.peekFirst();
+            if (oldest == null || (oldestMatch != null && oldestMatch.seq < oldest.seq)) {
+                oldest = oldestMatch;
+            }
+        }
+        oldestReceiveNanos = oldest != null ? oldest.result.receiveNanos : 0;
+    }
+
+    MetricsSnapshot.ClientMetrics metrics(long nowNanos) {
+        MetricsSnapshot.ClientMetrics metrics = new MetricsSnapshot.ClientMetrics();
+        metrics.client = name;
+        metrics.policy = policy.name();
+        metrics.filter = filter.toString();
+        metrics.encoding = encoding.name();
+        metrics.queued = queued;
+        metrics.dropped = droppedCount;
+        metrics.conflated = conflatedCount;
+        metrics.filtered = filteredCount;
+        metrics.sentResults = sentResults;
+        metrics.sentFrames = sentFrames;
+        metrics.sentBytes = sentBytes;
+        long oldest = oldestReceiveNanos;
+        metrics.lagMillis = oldest != 0 ? Math.max(0, nowNanos - oldest) / 1e6 : 0;
+        metrics.backlogged = backlogged();
+        return metrics;
+    }
+}
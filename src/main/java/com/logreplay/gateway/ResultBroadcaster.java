@@ -0,0 +1,294 @@
+package com.logreplay.gateway;
+
+import com.google.gson.Gson;
+import com.logreplay.metrics.MetricsSnapshot;
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Batched Result Broadcast with Per-Client Back-Pressure
+ *
+ * Design:
+ * - Engine workers only enqueue into a lock-free bounded queue: no JSON,
+ *   no socket and no lock on the replay threads.
+ * - A single daemon thread drains the queue and flushes a batch as one
+ *   JSON array frame when it holds batchSize results or its oldest result
+ *   has waited flushMillis, whichever comes first.
+ * - Each client only gets the results its subscription (ResultFilter)
+ *   lets through, decided before serialization; up-to-date clients with
+ *   the same subscription get the same frame, encoded once per encoding
+ *   (JSON, or ResultCodec binary when the client asked for it). A client
+ *   whose previous frame is still buffered (slow link) gets the batch in
+ *   its own bounded ClientChannel instead, drained into frames of its own
+ *   as it catches up; when that queue overflows its policy applies. Sends
+ *   never block, so a slow client delays nobody else.
+ * - When the engine-side queue is full the result is dropped and counted
+ *   instead of blocking the engine; the drop count is reported on close.
+ */
+final class ResultBroadcaster {
+
+    private static final long IDLE_PARK_NANOS = 200_000; // 0.2ms
+    private static final int CLOSE_POLICY_VIOLATION = 1008;
+
+    /**
+     * The results of one batch for one subscription, encoded at most once
+     * per encoding.
+     */
+    private static final class Frame {
+        final List<ComparisonResult> results;
+        String json;
+        byte[] binary;
+
+        Frame(List<ComparisonResult> results) {
+            this.results = results;
+        }
+    }
+
+    private final ManyToOneConcurrentArrayQueue<ComparisonResult> queue;
+    private final Map<WebSocket, ClientChannel> channels = new ConcurrentHashMap<>();
+    private final Gson gson;
+    private final int batchSize;
+    private final long flushNanos;
+    private final ClientChannel.Policy policy;
+    private final int clientCapacity;
+    private final List<ComparisonResult> batch;
+    private final List<ComparisonResult> clientBatch;
+    private final Map<ResultFilter, Frame> frames = new HashMap<>(); // Per flush, by subscription
+    private final ResultCodec codec = new ResultCodec();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private long batchStartNanos;
+    private long batches;
+    private long results;
+
+    ResultBroadcaster(Gson gson, int batchSize, long flushMillis, int queueCapacity, ClientChannel.Policy policy,
+            int clientCapacity) {
+        this.queue = new ManyToOneConcurrentArrayQueue<>(queueCapacity);
+        this.gson = gson;
+        this.batchSize = batchSize;
+        this.flushNanos = flushMillis * 1_000_000L;
+        this.policy = policy;
+        this.clientCapacity = clientCapacity;
+        this.batch = new ArrayList<>(batchSize);
+        this.clientBatch = new ArrayList<>(batchSize);
+        this.flusher = new Thread(this::flushLoop, "ws-broadcast");
+        this.flusher.setDaemon(true);
+    }
+
+    void start() {
+        flusher.start();
+        System.out.println("[Gateway] Broadcasting results in batches of up to " + batchSize + " every "
+                + flushNanos / 1_000_000 + "ms; slow clients: " + policy + " beyond " + clientCapacity + " results");
+    }
+
+    void register(WebSocket conn) {
+        channels.put(conn, new ClientChannel(conn, policy, clientCapacity));
+    }
+
+    void unregister(WebSocket conn) {
+        channels.remove(conn);
+    }
+
+    /**
+     * Applies from the next batch on; results already waiting in the
+     * client's queue were filtered with the previous subscription.
+     */
+    void subscribe(WebSocket conn, ResultFilter filter, ResultCodec.Encoding encoding) {
+        ClientChannel channel = channels.get(conn);
+        if (channel != null) {
+            channel.filter = filter;
+            channel.encoding = encoding;
+        }
+    }
+
+    /**
+     * Engine worker threads: never blocks.
+     */
+    void enqueue(ComparisonResult result) {
+        if (!queue.offer(result)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sends a standalone frame (e.g. METRICS) to every client that is not
+     * behind; a backlogged client simply misses it, the next one follows.
+     */
+    void sendToAll(String json) {
+        for (ClientChannel channel : channels.values()) {
+            if (channel.conn.isOpen() && !channel.backlogged()) {
+                channel.conn.send(json);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            int drained = queue.drain(this::add, batchSize - batch.size());
+            boolean flushed = false;
+            if (!batch.isEmpty() && (batch.size() >= batchSize || System.nanoTime() - batchStartNanos >= flushNanos)) {
+                flush();
+                flushed = true;
+            }
+            boolean caughtUp = flushClientQueues();
+            if (drained == 0 && !flushed && !caughtUp) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void add(ComparisonResult result) {
+        if (batch.isEmpty()) {
+            batchStartNanos = System.nanoTime();
+        }
+        batch.add(result);
+    }
+
+    /**
+     * Shared frame to the clients that are up to date, the batch into the
+     * queues of those that are not. Each client only gets the results its
+     * subscription lets through; clients with equal subscriptions share one
+     * serialized frame.
+     */
+    private void flush() {
+        frames.clear();
+        try {
+            for (ClientChannel channel : channels.values()) {
+                if (channel.closing || !channel.conn.isOpen()) {
+                    continue;
+                }
+                ResultFilter filter = channel.filter;
+                if (channel.isEmpty() && !channel.backlogged()) {
+                    Frame frame = frames.computeIfAbsent(filter, this::select); // Once per subscription
+                    if (!frame.results.isEmpty()) {
+                        send(channel, frame);
+                    }
+                    channel.filtered(batch.size() - frame.results.size());
+                } else {
+                    int filtered = 0;
+                    for (ComparisonResult result : batch) {
+                        if (!filter.matches(result)) {
+                            filtered++;
+                        } else if (!channel.offer(result)) {
+                            disconnect(channel);
+                            break;
+                        }
+                    }
+                    channel.filtered(filtered);
+                }
+            }
+            batches++;
+            results += batch.size();
+        } catch (Exception e) {
+            System.err.println("[Gateway] Broadcast error: " + e.getMessage());
+        }
+        frames.clear();
+        batch.clear();
+    }
+
+    private Frame select(ResultFilter filter) {
+        if (filter == ResultFilter.ALL) {
+            return new Frame(batch);
+        }
+        List<ComparisonResult> selected = new ArrayList<>();
+        for (ComparisonResult result : batch) {
+            if (filter.matches(result)) {
+                selected.add(result);
+            }
+        }
+        return new Frame(selected);
+    }
+
+    /**
+     * Sends the frame in the client's encoding, encoding it on first use.
+     */
+    private void send(ClientChannel channel, Frame frame) {
+        int bytes;
+        if (channel.encoding == ResultCodec.Encoding.BINARY) {
+            if (frame.binary == null) {
+                frame.binary = codec.encode(frame.results);
+            }
+            channel.conn.send(frame.binary);
+            bytes = frame.binary.length;
+        } else {
+            if (frame.json == null) {
+                frame.json = gson.toJson(frame.results);
+            }
+            channel.conn.send(frame.json);
+            bytes = frame.json.length(); // ASCII payloads: chars = bytes
+        }
+        channel.sent(frame.results.size(), bytes);
+    }
+
+    /**
+     * One frame to each client that has results waiting and has caught up.
+     * Returns true if anything was sent.
+     */
+    private boolean flushClientQueues() {
+        boolean sent = false;
+        for (ClientChannel channel : channels.values()) {
+            if (channel.isEmpty() || channel.closing || channel.backlogged()) {
+                continue;
+            }
+            try {
+                channel.drainTo(clientBatch, batchSize);
+                if (channel.conn.isOpen()) {
+                    send(channel, new Frame(clientBatch));
+                    sent = true;
+                }
+            } catch (Exception e) {
+                System.err.println("[Gateway] Send error to " + channel.name + ": " + e.getMessage());
+            }
+            clientBatch.clear();
+        }
+        return sent;
+    }
+
+    private void disconnect(ClientChannel channel) {
+        channel.closing = true;
+        channel.clear();
+        System.err.println(">> [GATEWAY] Disconnecting slow client " + channel.name + " (more than "
+                + clientCapacity + " results behind)");
+        channel.conn.close(CLOSE_POLICY_VIOLATION, "Too slow: outbound queue full");
+    }
+
+    List<MetricsSnapshot.ClientMetrics> clientMetrics() {
+        long now = System.nanoTime();
+        List<MetricsSnapshot.ClientMetrics> metrics = new ArrayList<>();
+        for (ClientChannel channel : channels.values()) {
+            metrics.add(channel.metrics(now));
+        }
+        return metrics;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    void close() {
+        running = false;
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("[Gateway] Broadcast " + results + " results in " + batches + " batches");
+        if (dropped.get() > 0) {
+            System.err.println("[Gateway] " + dropped.get() + " results dropped (broadcast queue full)");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.logreplay.gateway;
+
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import org.agrona.ExpandableArrayBuffer;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary Encoding of a Result Frame
+ *
+ * Fixed little-endian layout in the spirit of SBE, decoded by
+ * web-ui/src/protocol/decodeResults.js (keep both in step, bump
+ * SCHEMA_VERSION on any change):
+ *
+ *   header   u16 templateId (1) | u16 schemaVersion | u32 resultCount
+ *   result   u8  status (index in STATUSES, 255 unknown)
+ *            u8  length + ASCII  processType
+ *            u16 length + ASCII  orderId
+ *            u8  length + ASCII  symbol
+ *            u16 mismatchCount
+ *   mismatch i32 tag (FIX tags parse signed, see FixTokenizer)
+ *            u16 length + ASCII  original value
+ *            u16 length + ASCII  replayed value
+ *
+ * A length of all ones (255 / 65535) means null. Tags are ints instead of
+ * map keys, no field names are repeated and there is no reflection. Not
+ * thread-safe: one instance per flush thread.
+ */
+final class ResultCodec {
+
+    enum Encoding {
+        JSON, BINARY
+    }
+
+    static final int TEMPLATE_RESULTS = 1;
+    static final int SCHEMA_VERSION = 2;
+    static final String[] STATUSES = { "MATCH", "MISMATCH", "MISSING_IN_ORIGINAL", "MISSING_IN_REPLAY" };
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int NULL_U8 = 0xFF;
+    private static final int NULL_U16 = 0xFFFF;
+    private static final int UNKNOWN_STATUS = 0xFF;
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(64 * 1024);
+
+    /**
+     * The frame for results, as a fresh array that can be handed to several
+     * sockets.
+     */
+    byte[] encode(List<ComparisonResult> results) {
+        int offset = 0;
+        buffer.putShort(offset, (short) TEMPLATE_RESULTS, ORDER);
+        buffer.putShort(offset + 2, (short) SCHEMA_VERSION, ORDER);
+        buffer.putInt(offset + 4, results.size(), ORDER);
+        offset += 8;
+
+        for (ComparisonResult result : results) {
+            buffer.putByte(offset++, (byte) statusCode(result.status));
+            offset = putString8(offset, result.processType);
+            offset = putString16(offset, result.orderId);
+            offset = putString8(offset, result.symbol);
+
+            Map<String, String[]> mismatches = result.tagMismatches;
+            int count = mismatches == null ? 0 : mismatches.size();
+            buffer.putShort(offset, (short) count, ORDER);
+            offset += 2;
+            if (count > 0) {
+                for (Map.Entry<String, String[]> mismatch : mismatches.entrySet()) {
+                    String[] values = mismatch.getValue();
+                    buffer.putInt(offset, Integer.parseInt(mismatch.getKey()), ORDER);
+                    offset = putString16(offset + 4, values[0]);
+                    offset = putString16(offset, values[1]);
+                }
+            }
+        }
+        return Arrays.copyOf(buffer.byteArray(), offset);
+    }
+
+    private static int statusCode(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return UNKNOWN_STATUS;
+    }
+
+    private int putString8(int offset, String value) {
+        if (value == null) {
+            buffer.putByte(offset, (byte) NULL_U8);
+            return offset + 1;
+        }
+        String s = value.length() < NULL_U8 ? value : value.substring(0, NULL_U8 - 1);
+        buffer.putByte(offset, (byte) s.length());
+        return offset + 1 + buffer.putStringWithoutLengthAscii(offset + 1, s);
+    }
+
+    private int putString16(int offset, String value) {
+        if (value == null) {
+            buffer.putShort(offset, (short) NULL_U16, ORDER);
+            return offset + 2;
+        }
+        String s = value.length() < NULL_U16 ? value : value.substring(0, NULL_U16 - 1);
+        buffer.putShort(offset, (short) s.length(), ORDER);
+        return offset + 2 + buffer.putStringWithoutLengthAscii(offset + 2, s);
+    }
+}
@@ -0,0 +1,204 @@
+package com.logreplay.gateway;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What One WebSocket Client Wants to Receive
+ *
+ * Clients subscribe with a JSON text message; every field is optional and
+ * an absent field matches everything:
+ *
+ *   {"type":"SUBSCRIBE", "statuses":["MISMATCH"], "streams":["oms"],
+ *    "symbols":["VOD"], "tags":["44","38"], "orderIdPrefix":"8387",
+ *    "sampleRate":0.1}
+ *
+ * - tags: the result has a mismatch on at least one of them
+ * - sampleRate: share of orders kept, decided per order ID (an order is
+ *   either always or never sampled)
+ *
+ * {"type":"UNSUBSCRIBE"} goes back to everything, the default on connect.
+ * Either message may also pick the encoding of result frames:
+ * "encoding":"BINARY" (ResultCodec) or "JSON" (default when absent).
+ * Filters are immutable; equal filters share one serialized frame.
+ */
+final class ResultFilter {
+
+    static final ResultFilter ALL = new ResultFilter(null, null, null, null, null, 1.0);
+
+    private static final int SAMPLE_BUCKETS = 10_000;
+
+    /**
+     * Wire form of SUBSCRIBE / UNSUBSCRIBE, also echoed back in the ack.
+     */
+    static final class Request {
+        String type;
+        List<String> statuses;
+        List<String> streams;
+        List<String> symbols;
+        List<String> tags;
+        String orderIdPrefix;
+        Double sampleRate;
+        String encoding; // Result frames from now on: JSON (default) or BINARY (ResultCodec)
+    }
+
+    private final Set<String> statuses;
+    private final Set<String> streams;
+    private final Set<String> symbols;
+    private final Set<String> tags;
+    private final String orderIdPrefix;
+    private final double sampleRate;
+    private final int sampleBuckets;
+
+    private ResultFilter(Set<String> statuses, Set<String> streams, Set<String> symbols, Set<String> tags,
+            String orderIdPrefix, double sampleRate) {
+        this.statuses = statuses;
+        this.streams = streams;
+        this.symbols = symbols;
+        this.tags = tags;
+        this.orderIdPrefix = orderIdPrefix;
+        this.sampleRate = sampleRate;
+        this.sampleBuckets = (int) Math.round(sampleRate * SAMPLE_BUCKETS);
+    }
+
+    /**
+     * Parses a client message. Throws IllegalArgumentException for anything
+     * that is not a valid SUBSCRIBE / UNSUBSCRIBE.
+     */
+    static Request parse(Gson gson, String message) {
+        Request request;
+        try {
+            request = gson.fromJson(message, Request.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Not a JSON subscription object");
+        }
+        if (request == null || request.type == null) {
+            throw new IllegalArgumentException("Missing \"type\" (SUBSCRIBE or UNSUBSCRIBE)");
+        }
+        request.type = request.type.toUpperCase(Locale.ROOT);
+        if (!"SUBSCRIBE".equals(request.type) && !"UNSUBSCRIBE".equals(request.type)) {
+            throw new IllegalArgumentException("Unknown type: " + request.type);
+        }
+        if (request.encoding != null) {
+            request.encoding = request.encoding.toUpperCase(Locale.ROOT);
+            try {
+                ResultCodec.Encoding.valueOf(request.encoding);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown encoding: " + request.encoding);
+            }
+        }
+        if (request.sampleRate != null && !(request.sampleRate > 0 && request.sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate must be in (0, 1]: " + request.sampleRate);
+        }
+        return request;
+    }
+
+    static ResultCodec.Encoding encodingOf(Request request) {
+        return request.encoding == null ? ResultCodec.Encoding.JSON : ResultCodec.Encoding.valueOf(request.encoding);
+    }
+
+    static ResultFilter of(Request request) {
+        if ("UNSUBSCRIBE".equals(request.type)) {
+            return ALL;
+        }
+        ResultFilter filter = new ResultFilter(
+                setOf(request.statuses, true),
+                setOf(request.streams, false),
+                setOf(request.symbols, false),
+                setOf(request.tags, false),
+                request.orderIdPrefix == null || request.orderIdPrefix.isEmpty() ? null : request.orderIdPrefix,
+                request.sampleRate == null ? 1.0 : request.sampleRate);
+        return filter.equals(ALL) ? ALL : filter;
+    }
+
+    private static Set<String> setOf(Collection<String> values, boolean upperCase) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            if (value != null) {
+                set.add(upperCase ? value.trim().toUpperCase(Locale.ROOT) : value.trim());
+            }
+        }
+        return set;
+    }
+
+    boolean matches(ComparisonResult result) {
+        if (this == ALL) {
+            return true;
+        }
+        if (statuses != null && !statuses.contains(result.status)) {
+            return false;
+        }
+        if (streams != null && (result.processType == null || !streams.contains(result.processType))) {
+            return false;
+        }
+        if (symbols != null && (result.symbol == null || !symbols.contains(result.symbol))) {
+            return false;
+        }
+        if (orderIdPrefix != null && (result.orderId == null || !result.orderId.startsWith(orderIdPrefix))) {
+            return false;
+        }
+        if (tags != null && !hasMismatchOn(result)) {
+            return false;
+        }
+        return sampleBuckets >= SAMPLE_BUCKETS || sampled(result.orderId);
+    }
+
+    private boolean hasMismatchOn(ComparisonResult result) {
+        if (result.tagMismatches == null || result.tagMismatches.isEmpty()) {
+            return false;
+        }
+        for (String tag : tags) {
+            if (result.tagMismatches.containsKey(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sampled(String orderId) {
+        if (orderId == null) {
+            return false;
+        }
+        int hash = orderId.hashCode() * 0x9E3779B9; // Spread sequential IDs
+        return ((hash >>> 1) % SAMPLE_BUCKETS) < sampleBuckets;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultFilter)) {
+            return false;
+        }
+        ResultFilter other = (ResultFilter) o;
+        return sampleBuckets == other.sampleBuckets && Objects.equals(statuses, other.statuses)
+                && Objects.equals(streams, other.streams) && Objects.equals(symbols, other.symbols)
+                && Objects.equals(tags, other.tags) && Objects.equals(orderIdPrefix, other.orderIdPrefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(statuses, streams, symbols, tags, orderIdPrefix, sampleBuckets);
+    }
+
+    @Override
+    public String toString() {
+        if (this == ALL) {
+            return "ALL";
+        }
+        return "statuses=" + statuses + " streams=" + streams + " symbols=" + symbols + " tags=" + tags
+                + " orderIdPrefix=" + orderIdPrefix + " sampleRate=" + sampleRate;
+    }
+}
@@ -1,16 +1,17 @@
 package com.logreplay.gateway;
 
+import com.logreplay.metrics.MetricsReporter;
+import com.logreplay.metrics.MetricsSnapshot;
 import com.logreplay.solace.SolaceReplayEngine;
-import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import com.logreplay.transport.AeronTransport;
 import com.google.gson.Gson;
 import org.java_websocket.server.WebSocketServer;
 import org.java_websocket.WebSocket;
 import org.java_websocket.handshake.ClientHandshake;
 
 import java.net.InetSocketAddress;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * WebSocket Gateway for Real-Time Log Replay Results
@@ -18,9 +19,31 @@ import java.util.Set;
  */
 public class UIRestGateway extends WebSocketServer {
 
+    // STREAM=original log, comma separated; STREAM selects topic_<stream> in solace.properties
+    private static final String DEFAULT_STREAMS = "OMS=logs/OneOmsFixSrcOriginal.log,ONC=logs/OneOncFixSrcOriginal.log";
+
+    // Where replayed messages come from: solace or aeron (-Dreplay.aeron.*)
+    private static final String TRANSPORT = System.getProperty("replay.transport", "solace");
+
+    // Metrics snapshot cadence (WebSocket METRICS message) and scrape port (0 = off)
+    private static final long METRICS_INTERVAL_MILLIS = Long.getLong("replay.metrics.intervalMs", 1000);
+    private static final int METRICS_PORT = Integer.getInteger("replay.metrics.port", 9464);
+
+    // Results per WebSocket frame, max wait of a result before its frame is sent, queue slots
+    private static final int BATCH_SIZE = Integer.getInteger("replay.ws.batchSize", 256);
+    private static final long FLUSH_MILLIS = Long.getLong("replay.ws.flushMs", 50);
+    private static final int BROADCAST_QUEUE_CAPACITY = Integer.getInteger("replay.ws.queueCapacity", 64 * 1024);
+
+    // Per client: results held while it is behind, and what happens beyond that
+    private static final int CLIENT_QUEUE_CAPACITY = Integer.getInteger("replay.ws.clientQueue", 10_000);
+    private static final ClientChannel.Policy SLOW_CLIENT_POLICY = ClientChannel.Policy
+            .valueOf(System.getProperty("replay.ws.slowClientPolicy", "DROP_MATCH_FIRST").toUpperCase());
+
     private final Gson gson = new Gson();
-    private final Set<WebSocket> clients = Collections.synchronizedSet(new HashSet<>());
+    private final ResultBroadcaster results = new ResultBroadcaster(gson, BATCH_SIZE, FLUSH_MILLIS,
+            BROADCAST_QUEUE_CAPACITY, SLOW_CLIENT_POLICY, CLIENT_QUEUE_CAPACITY);
     private SolaceReplayEngine engine;
+    private MetricsReporter metrics;
 
     public UIRestGateway(InetSocketAddress address) {
         super(address);
@@ -40,24 +63,46 @@ public class UIRestGateway extends WebSocketServer {
             server.start();
             System.out.println("[Gateway] WebSocket server started on port: " + port);
 
-            // Initialize replay engine (Single Log Config)
+            // Results leave the engine threads through a queue, batched into array frames
+            server.results.start();
+
+            // Initialize replay engine (one index + topic per stream)
             System.out.println("[Gateway] Initializing replay engine...\n");
 
             server.engine = new SolaceReplayEngine(
-                    "logs/OneOmsFixSrcOriginal.log", // Just one log file
-                    result -> server.broadcastResult(result));
+                    parseStreams(System.getProperty("replay.streams", DEFAULT_STREAMS)),
+                    server.results::enqueue);
+
+            // Per-stage latency, throughput, queue depth and index footprint
+            server.metrics = new MetricsReporter(() -> {
+                MetricsSnapshot snapshot = server.engine.sampleMetrics();
+                snapshot.clients = server.results.clientMetrics();
+                return snapshot;
+            }, snapshot -> server.results.sendToAll(server.gson.toJson(snapshot)));
+            server.metrics.start(METRICS_INTERVAL_MILLIS);
+            if (METRICS_PORT > 0) {
+                server.metrics.serve(METRICS_PORT);
+            }
 
-            // Start consuming from Solace
-            server.engine.start("solace.properties");
+            // Start consuming: Solace (solace.properties) or broker-free Aeron
+            if ("aeron".equalsIgnoreCase(TRANSPORT)) {
+                server.engine.start(AeronTransport.fromSystemProperties());
+            } else {
+                server.engine.start("solace.properties");
+            }
 
             System.out.println("[Gateway] Engine started - streaming results to UI\n");
 
             // Shutdown hook
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\n[Gateway] Shutdown initiated...");
+                if (server.metrics != null) {
+                    server.metrics.shutdown();
+                }
                 if (server.engine != null) {
                     server.engine.shutdown();
                 }
+                server.results.close(); // After the engine: flush its last results
                 try {
                     server.stop(1000);
                 } catch (InterruptedException e) {
@@ -72,36 +117,55 @@ public class UIRestGateway extends WebSocketServer {
         }
     }
 
-    private void broadcastResult(ComparisonResult result) {
-        String json = gson.toJson(result);
-        synchronized (clients) {
-            for (WebSocket client : clients) {
-                if (client.isOpen()) {
-                    client.send(json);
-                }
+    private static Map<String, String> parseStreams(String spec) {
+        Map<String, String> streams = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Bad replay.streams entry (expected NAME=path): " + entry);
             }
+            streams.put(entry.substring(0, eq).trim(), entry.substring(eq + 1).trim());
         }
+        return streams;
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        synchronized (clients) {
-            clients.add(conn);
-        }
-        System.out.println(">> [GATEWAY] Client CONNECTED! (Total: " + clients.size() + ") Remote: "
+        results.register(conn);
+        System.out.println(">> [GATEWAY] Client CONNECTED! (Total: " + getConnections().size() + ") Remote: "
                 + conn.getRemoteSocketAddress());
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        synchronized (clients) {
-            clients.remove(conn);
-        }
-        System.out.println(">> [GATEWAY] Client DISCONNECTED! Reason: " + reason + " (Total: " + clients.size() + ")");
+        results.unregister(conn);
+        System.out.println(">> [GATEWAY] Client DISCONNECTED! Reason: " + reason + " (Total: "
+                + getConnections().size() + ")");
     }
 
+    /**
+     * Subscription protocol (see ResultFilter): SUBSCRIBE / UNSUBSCRIBE, which
+     * also negotiate the result encoding; acknowledged with SUBSCRIBED
+     * echoing the request, or ERROR.
+     */
     @Override
     public void onMessage(WebSocket conn, String message) {
+        Map<String, Object> reply = new LinkedHashMap<>();
+        try {
+            ResultFilter.Request request = ResultFilter.parse(gson, message);
+            ResultFilter filter = ResultFilter.of(request);
+            ResultCodec.Encoding encoding = ResultFilter.encodingOf(request);
+            results.subscribe(conn, filter, encoding);
+            reply.put("type", "SUBSCRIBED");
+            reply.put("filter", request);
+            System.out.println(">> [GATEWAY] " + conn.getRemoteSocketAddress() + " subscribed: " + filter + " (" + encoding + ")");
+        } catch (IllegalArgumentException e) {
+            reply.put("type", "ERROR");
+            reply.put("message", e.getMessage());
+            System.err.println(">> [GATEWAY] Bad message from " + conn.getRemoteSocketAddress() + ": "
+                    + e.getMessage());
+        }
+        conn.send(gson.toJson(reply));
     }
 
     @Override
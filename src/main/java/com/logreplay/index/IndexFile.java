@@ -0,0 +1,279 @@
+package com.logreplay.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent Sidecar Index ("original.log" -> "original.log.idx")
+ *
+ * Layout (big-endian):
+ * - Header: magic, version, source size / mtime / checksum, key spec,
+ *   message count, key count, hash table size, key bytes length.
+ * - long[messages]  packed (offset, length) of every message
+ * - int[messages]   next ordinal of the same key (MessageChains.next)
+ * - int[keys]       first ordinal of every key
+ * - int[keys + 1]   start of every key in the key bytes
+ * - int[table]      open-addressing hash table, keyId + 1 (0 = empty)
+ * - byte[]          keys, ISO-8859-1
+ *
+ * On open the sections are memory-mapped and used in place: a warm start
+ * costs one key-count sized copy (the mutable heads), independent of the
+ * size of the log. The sidecar is ignored (and rebuilt) as soon as the
+ * source size, mtime or head/tail checksum, or the key spec, differ.
+ */
+final class IndexFile {
+
+    static final String SUFFIX = ".idx";
+
+    private static final long MAGIC = 0x4649584944583031L; // "FIXIDX01"
+    private static final int VERSION = 1;
+    private static final int CHECKSUM_SPAN = 1 << 20; // CRC of the first and last 1MB of the source
+
+    private final int messageCount;
+    private final int keyCount;
+    private final LongBuffer locations;
+    private final IntBuffer next;
+    private final IntBuffer heads;
+    private final IntBuffer keyOffsets;
+    private final IntBuffer table;
+    private final ByteBuffer keyBytes;
+    private final int mask;
+
+    private IndexFile(int messageCount, int keyCount, LongBuffer locations, IntBuffer next, IntBuffer heads,
+            IntBuffer keyOffsets, IntBuffer table, ByteBuffer keyBytes) {
+        this.messageCount = messageCount;
+        this.keyCount = keyCount;
+        this.locations = locations;
+        this.next = next;
+        this.heads = heads;
+        this.keyOffsets = keyOffsets;
+        this.table = table;
+        this.keyBytes = keyBytes;
+        this.mask = table.capacity() - 1;
+    }
+
+    static Path sidecarFor(String sourcePath) {
+        return Paths.get(sourcePath + SUFFIX);
+    }
+
+    /**
+     * Writes the freshly built index next to its source. Written to a temp
+     * file first and moved into place, so a crash never leaves a torn sidecar.
+     */
+    static void write(Path sidecar, Path sourcePath, MappedLog source, KeySpec keySpec, MessageChains chains,
+            long[] locations) throws IOException {
+        int messages = chains.messageCount();
+        int keys = chains.keyCount();
+        int tableSize = tableSizeFor(keys);
+
+        // Key bytes + hash table
+        byte[][] encoded = new byte[keys][];
+        long keyBytesLength = 0;
+        int[] table = new int[tableSize];
+        for (int id = 0; id < keys; id++) {
+            String key = chains.key(id);
+            encoded[id] = key.getBytes(StandardCharsets.ISO_8859_1);
+            keyBytesLength += encoded[id].length;
+            int slot = spread(key.hashCode()) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = id + 1;
+        }
+        if ((long) messages * Long.BYTES > Integer.MAX_VALUE || keyBytesLength > Integer.MAX_VALUE) {
+            throw new IOException("Index too large for a sidecar (" + messages + " msgs)");
+        }
+
+        Path tmp = Paths.get(sidecar + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.size());
+            out.writeLong(Files.getLastModifiedTime(sourcePath).toMillis());
+            out.writeLong(checksum(source));
+            byte[] spec = keySpec.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(spec.length);
+            out.write(spec);
+            out.writeInt(messages);
+            out.writeInt(keys);
+            out.writeInt(tableSize);
+            out.writeInt((int) keyBytesLength);
+
+            for (int i = 0; i < messages; i++) {
+                out.writeLong(locations[i]);
+            }
+            for (int i = 0; i < messages; i++) {
+                out.writeInt(chains.next(i));
+            }
+            for (int id = 0; id < keys; id++) {
+                out.writeInt(chains.head(id));
+            }
+            int offset = 0;
+            for (int id = 0; id < keys; id++) {
+                out.writeInt(offset);
+                offset += encoded[id].length;
+            }
+            out.writeInt(offset);
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+            for (byte[] key : encoded) {
+                out.write(key);
+            }
+        }
+        Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the sidecar, or returns null if it is missing or does not match
+     * the source / key spec any more.
+     */
+    static IndexFile open(Path sidecar, Path sourcePath, MappedLog source, KeySpec keySpec) throws IOException {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 4096));
+            if (header.remaining() < 48 || header.getLong() != MAGIC || header.getInt() != VERSION) {
+                return stale(sidecar, "unknown format");
+            }
+            if (header.getLong() != source.size()
+                    || header.getLong() != Files.getLastModifiedTime(sourcePath).toMillis()) {
+                return stale(sidecar, "source size/mtime changed");
+            }
+            if (header.getLong() != checksum(source)) {
+                return stale(sidecar, "source checksum changed");
+            }
+            byte[] spec = new byte[header.getInt()];
+            header.get(spec);
+            if (!keySpec.toString().equals(new String(spec, StandardCharsets.UTF_8))) {
+                return stale(sidecar, "built for key " + new String(spec, StandardCharsets.UTF_8));
+            }
+            int messages = header.getInt();
+            int keys = header.getInt();
+            int tableSize = header.getInt();
+            int keyBytesLength = header.getInt();
+
+            // Mappings stay valid after the channel is closed
+            long pos = header.position();
+            LongBuffer locations = map(channel, pos, (long) messages * Long.BYTES).asLongBuffer();
+            pos += (long) messages * Long.BYTES;
+            IntBuffer next = map(channel, pos, (long) messages * Integer.BYTES).asIntBuffer();
+            pos += (long) messages * Integer.BYTES;
+            IntBuffer heads = map(channel, pos, (long) keys * Integer.BYTES).asIntBuffer();
+            pos += (long) keys * Integer.BYTES;
+            IntBuffer keyOffsets = map(channel, pos, (long) (keys + 1) * Integer.BYTES).asIntBuffer();
+            pos += (long) (keys + 1) * Integer.BYTES;
+            IntBuffer table = map(channel, pos, (long) tableSize * Integer.BYTES).asIntBuffer();
+            pos += (long) tableSize * Integer.BYTES;
+            ByteBuffer keyBytes = map(channel, pos, keyBytesLength);
+            if (pos + keyBytesLength != channel.size()) {
+                return stale(sidecar, "truncated");
+            }
+            return new IndexFile(messages, keys, locations, next, heads, keyOffsets, table, keyBytes);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long pos, long length) throws IOException {
+        if (pos + length > channel.size()) {
+            throw new IOException("Sidecar truncated at " + pos);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+    }
+
+    private static IndexFile stale(Path sidecar, String reason) {
+        System.out.println(">> [INDEX INFO] Ignoring sidecar " + sidecar + ": " + reason);
+        return null;
+    }
+
+    /**
+     * CRC32C of the first and last CHECKSUM_SPAN bytes: catches a log that
+     * was rewritten in place without reading a multi-GB file on every start.
+     */
+    private static long checksum(MappedLog source) {
+        CRC32C crc = new CRC32C();
+        byte[] chunk = new byte[(int) Math.min(CHECKSUM_SPAN, source.size())];
+        source.read(0, chunk, chunk.length);
+        crc.update(chunk);
+        source.read(source.size() - chunk.length, chunk, chunk.length);
+        crc.update(chunk);
+        return crc.getValue();
+    }
+
+    private static int tableSizeFor(int keys) {
+        return Integer.highestOneBit(Math.max(2, keys) * 2 - 1) << 1; // Load factor <= 0.5
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    int messageCount() {
+        return messageCount;
+    }
+
+    int keyCount() {
+        return keyCount;
+    }
+
+    long location(int ordinal) {
+        return locations.get(ordinal);
+    }
+
+    int next(int ordinal) {
+        return next.get(ordinal);
+    }
+
+    int head(int keyId) {
+        return heads.get(keyId);
+    }
+
+    /**
+     * Key id by probing the mapped hash table, -1 if absent. No allocation.
+     */
+    int find(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        int entry;
+        while ((entry = table.get(slot)) != 0) {
+            if (keyEquals(entry - 1, key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int keyId, String key) {
+        int from = keyOffsets.get(keyId);
+        int length = keyOffsets.get(keyId + 1) - from;
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((keyBytes.get(from + i) & 0xFF) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String key(int keyId) {
+        int from = keyOffsets.get(keyId);
+        byte[] bytes = new byte[keyOffsets.get(keyId + 1) - from];
+        keyBytes.get(from, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.logreplay.index;
+
+import com.logreplay.fix.FixTokenizer;
+
+/**
+ * Composite Index Key
+ *
+ * Spec syntax: components joined by "+", alternatives for one component
+ * separated by "/", first present alternative wins.
+ * - "55"       = Symbol
+ * - "37/11+35" = OrderID (or ClOrdID if no OrderID) + MsgType
+ * - "37+35+34" = OrderID + MsgType + MsgSeqNum
+ *
+ * The key of a message is the component values joined by "+"
+ * (e.g. "8387486748+G"). A message missing any component has no key.
+ */
+public final class KeySpec {
+
+    private static final char SEPARATOR = '+';
+
+    private final String spec;
+    private final int[][] components; // components[i] = alternative tags, in preference order
+
+    private KeySpec(String spec, int[][] components) {
+        this.spec = spec;
+        this.components = components;
+    }
+
+    public static KeySpec parse(String spec) {
+        String[] parts = spec.trim().split("\\+");
+        int[][] components = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String[] alternatives = parts[i].trim().split("/");
+            components[i] = new int[alternatives.length];
+            for (int j = 0; j < alternatives.length; j++) {
+                try {
+                    components[i][j] = Integer.parseInt(alternatives[j].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad key spec '" + spec + "': " + alternatives[j]);
+                }
+            }
+        }
+        return new KeySpec(spec.trim(), components);
+    }
+
+    /**
+     * Key of the message the tokenizer is wrapped around, or null if a
+     * component is missing. Moves the tokenizer's cursor.
+     */
+    public String extract(FixTokenizer tokenizer) {
+        if (components.length == 1) {
+            return findValue(tokenizer, components[0]) ? tokenizer.valueAsString() : null;
+        }
+
+        StringBuilder key = new StringBuilder(32);
+        for (int i = 0; i < components.length; i++) {
+            if (!findValue(tokenizer, components[i])) {
+                return null;
+            }
+            if (i > 0) {
+                key.append(SEPARATOR);
+            }
+            for (int p = tokenizer.valueOffset(), end = p + tokenizer.valueLength(); p < end; p++) {
+                key.append((char) (tokenizer.byteAt(p) & 0xFF));
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean findValue(FixTokenizer tokenizer, int[] alternatives) {
+        for (int tag : alternatives) {
+            tokenizer.rewind(); // Tags can come in any order
+            if (tokenizer.find(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
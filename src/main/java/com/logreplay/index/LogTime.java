@@ -0,0 +1,66 @@
+package com.logreplay.index;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Log Line Timestamps
+ *
+ * Original logs start every line with the time it was written,
+ * yyyy-MM-ddTHH:mm:ss[.fraction] (local time, no zone). Parsed by hand:
+ * it runs once per line of multi-GB logs.
+ */
+public final class LogTime {
+
+    public static final long NONE = Long.MIN_VALUE;
+
+    private LogTime() {
+    }
+
+    /**
+     * Micros since the epoch of a line starting with
+     * yyyy-MM-ddTHH:mm:ss[.fraction], or NONE.
+     */
+    public static long parseMicros(CharSequence line) {
+        if (line.length() < 19 || line.charAt(4) != '-' || line.charAt(7) != '-' || line.charAt(10) != 'T'
+                || line.charAt(13) != ':' || line.charAt(16) != ':') {
+            return NONE;
+        }
+        int year = digits(line, 0, 4);
+        int month = digits(line, 5, 2);
+        int day = digits(line, 8, 2);
+        int hours = digits(line, 11, 2);
+        int minutes = digits(line, 14, 2);
+        int seconds = digits(line, 17, 2);
+        if (year < 0 || month < 0 || day < 0 || hours < 0 || minutes < 0 || seconds < 0) {
+            return NONE;
+        }
+        long fractionMicros = 0;
+        if (line.length() > 20 && line.charAt(19) == '.') {
+            int scale = 100_000;
+            for (int i = 20; i < line.length() && Character.isDigit(line.charAt(i)); i++) {
+                fractionMicros += (line.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+        long dayMicros;
+        try {
+            dayMicros = LocalDate.of(year, month, day).toEpochDay() * 86_400_000_000L;
+        } catch (DateTimeException e) {
+            return NONE; // e.g. 2025-02-30
+        }
+        return dayMicros + ((hours * 60L + minutes) * 60 + seconds) * 1_000_000 + fractionMicros;
+    }
+
+    private static int digits(CharSequence s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
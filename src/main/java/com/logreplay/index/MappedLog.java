@@ -0,0 +1,149 @@
+package com.logreplay.index;
+
+import com.logreplay.fix.FixTokenizer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only Memory Mapping of a Log File
+ *
+ * Design:
+ * - A single MappedByteBuffer is capped at 2GB, so the file is mapped as a
+ *   series of fixed-size segments.
+ * - Pages are loaded by the OS on demand, nothing is copied onto the heap.
+ * - Reads that straddle a segment boundary are stitched transparently.
+ */
+final class MappedLog {
+
+    static final int SEGMENT_SHIFT = 30; // 1GB per segment
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    MappedLog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            this.segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long base = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(SEGMENT_SIZE, size - base));
+            }
+        }
+        // Mappings stay valid after the channel is closed
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Finds the next occurrence of pattern in [from, to), or -1.
+     */
+    long indexOf(byte[] pattern, long from, long to) {
+        byte first = pattern[0];
+        long last = to - pattern.length;
+        long pos = from;
+        while (pos <= last) {
+            // Scan one segment at a time with int positions
+            int seg = (int) (pos >>> SEGMENT_SHIFT);
+            MappedByteBuffer buffer = segments[seg];
+            long base = (long) seg << SEGMENT_SHIFT;
+            int end = (int) Math.min(buffer.limit(), last - base + 1);
+            for (int i = (int) (pos - base); i < end; i++) {
+                if (buffer.get(i) == first && matchesAt(base + i, pattern))
+                    return base + i;
+            }
+            pos = base + end;
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(long pos, byte[] pattern) {
+        for (int i = 1; i < pattern.length; i++) {
+            if (get(pos + i) != pattern[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies [offset, offset + length) out of the mapping into dst.
+     */
+    void read(long offset, byte[] dst, int length) {
+        int copied = 0;
+        while (copied < length) {
+            long pos = offset + copied;
+            MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+            int segPos = (int) (pos & (SEGMENT_SIZE - 1));
+            int chunk = Math.min(length - copied, segment.limit() - segPos);
+            segment.get(segPos, dst, copied, chunk);
+            copied += chunk;
+        }
+    }
+
+    /**
+     * Copies [offset, offset + length) into dst normalized exactly like
+     * SimpleLogIndex.normalize() (one byte per char), returns its length.
+     */
+    int readNormalized(long offset, int length, byte[] dst) {
+        read(offset, dst, length);
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = dst[i];
+            if (b == '^' && i + 1 < length && dst[i + 1] == 'A') {
+                b = 1;
+                i++;
+            } else if (b == '|') {
+                b = 1;
+            }
+            dst[out++] = b;
+        }
+        // String.trim(): SOH counts as whitespace too
+        int from = 0;
+        while (from < out && (dst[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (out > from && (dst[out - 1] & 0xFF) <= ' ') {
+            out--;
+        }
+        System.arraycopy(dst, from, dst, 0, out - from);
+        return out - from;
+    }
+
+    /**
+     * Points the tokenizer at [offset, offset + length) without copying, unless
+     * the region straddles two segments (then it is copied into the
+     * tokenizer's scratch array).
+     */
+    void wrap(FixTokenizer tokenizer, long offset, int length) {
+        int seg = (int) (offset >>> SEGMENT_SHIFT);
+        int segPos = (int) (offset & (SEGMENT_SIZE - 1));
+        if (segPos + length <= segments[seg].limit()) {
+            tokenizer.wrap(segments[seg], segPos, length);
+        } else {
+            byte[] copy = tokenizer.scratch(length);
+            read(offset, copy, length);
+            tokenizer.wrap(copy, 0, length);
+        }
+    }
+
+    /**
+     * Materializes [offset, offset + length) as a String (FIX is plain ASCII).
+     */
+    String readString(long offset, int length) {
+        byte[] bytes = new byte[length];
+        read(offset, bytes, length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
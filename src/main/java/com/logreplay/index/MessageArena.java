@@ -0,0 +1,305 @@
+package com.logreplay.index;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Off-Heap Message Arena
+ *
+ * Design:
+ * - Normalized message bytes (SOH delimiters, one byte per char) live in
+ *   4MB direct chunks wrapped in UnsafeBuffer. The heap holds one long per
+ *   message (its location) and nothing the GC has to trace per message.
+ * - Location = (chunk, offset, length) packed into one long, per ordinal,
+ *   in an AtomicLongArray so compaction can move a message under a reader.
+ * - Every message is preceded by an 8-byte header (ordinal, length), so a
+ *   chunk can be walked without the index: that is what compaction does.
+ * - remove() only marks the slot and updates the chunk's live byte count.
+ *   A chunk with no live bytes is dropped; the remover that takes a chunk
+ *   below 25% live copies its survivors to the compaction chunk and drops
+ *   it. The replay consumes the log roughly in file order, so chunks empty
+ *   out (and the arena shrinks) as it goes.
+ * - Dropped chunks are never written again and their ids never reused:
+ *   a reader that still holds one (or a stale location) reads valid bytes,
+ *   and the direct memory is returned when the GC collects the buffer.
+ * - seal() caps the chunk ids at twice the built chunks (+16). Compaction
+ *   that runs out of ids stops for good, with a warning; sparse chunks are
+ *   then only returned once empty.
+ * - Build (put, seal) is single-threaded; get/remove from any thread.
+ */
+final class MessageArena {
+
+    static final int CHUNK_BYTES = 4 << 20;
+    private static final int HEADER = 8; // int ordinal, int length
+    private static final int OFFSET_BITS = 22; // Within a 4MB chunk; a larger message gets a chunk of its own at HEADER
+    private static final int LENGTH_BITS = 24;
+    private static final int CHUNK_SHIFT = OFFSET_BITS + LENGTH_BITS;
+    private static final int MAX_CHUNKS = (1 << (64 - CHUNK_SHIFT)) - 1; // All ones is REMOVED
+    private static final long REMOVED = -1;
+    private static final int COMPACT_PERCENT = 25;
+
+    private final AtomicLongArray slots;
+    // Build: growable; seal() fixes the capacity (2x the built chunks) for compaction
+    private UnsafeBuffer[] building = new UnsafeBuffer[16];
+    private long[] buildingLive = new long[16];
+    private AtomicReferenceArray<UnsafeBuffer> chunks;
+    private AtomicLongArray liveBytes;
+    private final AtomicLong allocated = new AtomicLong(); // Direct bytes of chunks not yet dropped
+
+    // Single writer: the builder, then whoever holds compacting
+    private int chunkCount;
+    private volatile int target = -1; // Chunk being filled, never dropped
+    private int position;
+    private int[] usedBytes = new int[16]; // Per chunk, to walk it
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<Integer> sparse = new ConcurrentLinkedQueue<>();
+    private volatile boolean full; // No chunk id left for compaction
+    private byte[] scratch = new byte[1024];
+    private UnsafeBuffer scratchBuffer = new UnsafeBuffer(scratch);
+
+    MessageArena(int messages) {
+        this.slots = new AtomicLongArray(messages);
+    }
+
+    /**
+     * Build: copies the message at [offset, offset + length) of the log,
+     * normalized exactly like SimpleLogIndex.normalize().
+     */
+    void put(int ordinal, MappedLog log, long offset, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            scratchBuffer = new UnsafeBuffer(scratch);
+        }
+        int normalized = Math.min(log.readNormalized(offset, length, scratch), (1 << LENGTH_BITS) - 1);
+        long location = write(ordinal, scratchBuffer, 0, normalized);
+        if (location == REMOVED) {
+            throw new IllegalStateException("Message arena full: " + MAX_CHUNKS + " chunks");
+        }
+        slots.set(ordinal, location);
+    }
+
+    /**
+     * Build done: chunks become visible to readers and to compaction.
+     */
+    void seal() {
+        int capacity = Math.min(MAX_CHUNKS, chunkCount * 2 + 16);
+        chunks = new AtomicReferenceArray<>(Arrays.copyOf(building, capacity));
+        liveBytes = new AtomicLongArray(Arrays.copyOf(buildingLive, capacity));
+        building = null;
+        buildingLive = null;
+        target = -1; // Compaction starts a chunk of its own
+    }
+
+    /**
+     * Message at ordinal, or null once removed.
+     */
+    String get(int ordinal) {
+        while (true) {
+            long location = slots.get(ordinal);
+            if (location == REMOVED) {
+                return null;
+            }
+            UnsafeBuffer chunk = chunks.get(chunkOf(location));
+            if (chunk != null) {
+                byte[] bytes = new byte[lengthOf(location)];
+                chunk.getBytes(offsetOf(location), bytes);
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            // Dropped after compaction moved the message: the slot already has its new location
+        }
+    }
+
+    void remove(int ordinal) {
+        long location = slots.getAndSet(ordinal, REMOVED);
+        if (location != REMOVED) {
+            released(chunkOf(location), HEADER + lengthOf(location));
+        }
+    }
+
+    /**
+     * Bytes of one message left a chunk: drop the chunk once empty, queue it
+     * for compaction when it just went sparse.
+     */
+    private void released(int chunk, int bytes) {
+        long capacity = chunkCapacity(chunk);
+        long live = liveBytes.addAndGet(chunk, -bytes);
+        if (live == 0) {
+            drop(chunk);
+        } else if (live * 100 < capacity * COMPACT_PERCENT && (live + bytes) * 100 >= capacity * COMPACT_PERCENT
+                && !full) {
+            sparse.add(chunk);
+            compact();
+        }
+    }
+
+    private long chunkCapacity(int chunk) {
+        UnsafeBuffer buffer = chunks.get(chunk);
+        return (buffer != null) ? buffer.capacity() : CHUNK_BYTES;
+    }
+
+    private void drop(int chunk) {
+        if (chunk == target) {
+            return; // Still being filled
+        }
+        UnsafeBuffer buffer = chunks.getAndSet(chunk, null);
+        if (buffer != null) {
+            allocated.addAndGet(-buffer.capacity());
+        }
+    }
+
+    /**
+     * Moves the survivors of every queued chunk to the compaction chunk. One
+     * thread at a time; a chunk queued while another thread compacts is left
+     * to it: the queue is checked again after the flag is released, so
+     * nothing queued before that is stranded.
+     */
+    private void compact() {
+        while (!sparse.isEmpty() && compacting.compareAndSet(false, true)) {
+            try {
+                Integer chunk;
+                while ((chunk = sparse.poll()) != null) {
+                    if (chunk != target) {
+                        compact(chunk);
+                    }
+                }
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    private void compact(int chunk) {
+        UnsafeBuffer source = chunks.get(chunk);
+        if (source == null) {
+            return;
+        }
+        int end = (chunk < usedBytes.length) ? usedBytes[chunk] : 0;
+        for (int pos = 0; pos < end; pos = align(pos + HEADER + source.getInt(pos + 4))) {
+            int ordinal = source.getInt(pos);
+            int length = source.getInt(pos + 4);
+            long location = location(chunk, pos + HEADER, length);
+            if (slots.get(ordinal) != location) {
+                continue; // Removed (or already moved)
+            }
+            long moved = write(ordinal, source, pos + HEADER, length);
+            if (moved == REMOVED) {
+                if (!full) {
+                    full = true;
+                    System.err.println("[MessageArena] Out of chunk ids (" + chunks.length()
+                            + "), compaction stopped: sparse chunks are now only freed once empty");
+                }
+                return;
+            }
+            if (slots.compareAndSet(ordinal, location, moved)) {
+                released(chunk, HEADER + length);
+            } else {
+                // Removed while copying: the copy is dead
+                liveBytes.addAndGet(chunkOf(moved), -(HEADER + length));
+            }
+        }
+    }
+
+    /**
+     * Appends header + message to the target chunk (a new one when it does
+     * not fit) and returns its location, REMOVED when out of chunk ids.
+     */
+    private long write(int ordinal, DirectBuffer src, int from, int length) {
+        int size = align(HEADER + length);
+        if (target == -1 || position + size > capacityOf(target)) {
+            if (!newChunk(Math.max(CHUNK_BYTES, size))) {
+                return REMOVED;
+            }
+        }
+        UnsafeBuffer chunk = (chunks != null) ? chunks.get(target) : building[target];
+        int offset = position;
+        chunk.putInt(offset, ordinal);
+        chunk.putInt(offset + 4, length);
+        chunk.putBytes(offset + HEADER, src, from, length);
+        position += size;
+        usedBytes[target] = position;
+        if (chunks != null) {
+            liveBytes.addAndGet(target, HEADER + length);
+        } else {
+            buildingLive[target] += HEADER + length;
+        }
+        return location(target, offset + HEADER, length);
+    }
+
+    private int capacityOf(int chunk) {
+        return (chunks != null) ? chunks.get(chunk).capacity() : building[chunk].capacity();
+    }
+
+    private boolean newChunk(int capacity) {
+        int previous = target;
+        int id = chunkCount;
+        if (id >= (chunks != null ? chunks.length() : MAX_CHUNKS)) {
+            return false;
+        }
+        if (chunks == null && id == building.length) {
+            building = Arrays.copyOf(building, id * 2);
+            buildingLive = Arrays.copyOf(buildingLive, id * 2);
+        }
+        if (id >= usedBytes.length) {
+            usedBytes = Arrays.copyOf(usedBytes, Math.max(id + 1, usedBytes.length * 2));
+        }
+        UnsafeBuffer chunk = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity));
+        if (chunks != null) {
+            chunks.set(id, chunk);
+        } else {
+            building[id] = chunk;
+        }
+        allocated.addAndGet(capacity);
+        chunkCount++;
+        target = id;
+        position = 0;
+        // The previous compaction chunk may have emptied while it was the target
+        if (chunks != null && previous != -1 && liveBytes.get(previous) == 0) {
+            drop(previous);
+        }
+        return true;
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static long location(int chunk, int offset, int length) {
+        return ((long) chunk << CHUNK_SHIFT) | ((long) offset << LENGTH_BITS) | length;
+    }
+
+    private static int chunkOf(long location) {
+        return (int) (location >>> CHUNK_SHIFT);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) ((location >>> LENGTH_BITS) & ((1L << OFFSET_BITS) - 1));
+    }
+
+    private static int lengthOf(long location) {
+        return (int) (location & ((1 << LENGTH_BITS) - 1));
+    }
+
+    /**
+     * Direct memory held by chunks not yet dropped.
+     */
+    long offHeapBytes() {
+        return allocated.get();
+    }
+
+    /**
+     * Heap footprint: the location per message and the chunk tables.
+     */
+    long heapBytes() {
+        long tables = 16L * ((chunks != null) ? chunks.length() : building.length);
+        return 8L * slots.length() + tables + 4L * usedBytes.length;
+    }
+}
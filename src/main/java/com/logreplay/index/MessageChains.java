@@ -0,0 +1,228 @@
+package com.logreplay.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-Key Message Chains
+ *
+ * Every message gets an ordinal in arrival order; callers keep the message
+ * payload (String, file location, ...) in their own array at that ordinal.
+ * Messages of one key are linked through next[], so a key costs one map
+ * entry plus two ints, and a message costs one int: memory grows with the
+ * message count, not with the number of occurrences per key. The key map is
+ * an open-addressing table of ints (key id by key hash, linear probing,
+ * load <= 0.5), no boxed ids or map nodes per key.
+ *
+ * Consumption walks each chain in order: the Nth consume() of a key returns
+ * its Nth message. Each key must be consumed by one thread at a time (the
+ * engine's pipeline routes all messages of a key to the same worker).
+ *
+ * Restored from a sidecar (IndexFile), keys and links are read from the
+ * mapping in place; only the per-key cursors live on the heap.
+ */
+public final class MessageChains {
+
+    public static final int NONE = -1;
+
+    // String + byte[] of a short key, roughly
+    private static final int KEY_STRING_BYTES = 56;
+
+    private int[] table; // key id + 1 per slot, 0 = empty; null when restored
+    private final IndexFile file; // null when built
+    private String[] keys;
+    private int[] hashes; // per key: spread hash, to skip equals() on collisions
+    private int[] head; // per key: next unconsumed ordinal, NONE when exhausted
+    private int[] tail; // per key: last appended ordinal (build only)
+    private int[] next; // per message: following ordinal of the same key
+    private int keyCount;
+    private int messageCount;
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    public MessageChains(int expectedMessages) {
+        int capacity = Math.max(16, expectedMessages);
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.file = null;
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.head = new int[capacity];
+        this.tail = new int[capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * Warm start: chains as they were written, nothing consumed yet.
+     */
+    MessageChains(IndexFile file) {
+        this.table = null;
+        this.file = file;
+        this.keyCount = file.keyCount();
+        this.messageCount = file.messageCount();
+        this.head = new int[keyCount];
+        for (int id = 0; id < keyCount; id++) {
+            head[id] = file.head(id);
+        }
+        this.remaining.set(messageCount);
+    }
+
+    /**
+     * Build phase (single thread): appends a message to the end of its key's
+     * chain and returns its ordinal.
+     */
+    public int append(String key) {
+        if (file != null) {
+            throw new IllegalStateException("Restored chains are read-only");
+        }
+        int ordinal = messageCount++;
+        if (ordinal == next.length) {
+            next = Arrays.copyOf(next, ordinal * 2);
+        }
+        next[ordinal] = NONE;
+
+        int hash = spread(key.hashCode());
+        int slot = slotOf(key, hash);
+        int id = table[slot] - 1;
+        if (id == NONE) {
+            int newId = keyCount++;
+            if (newId == head.length) {
+                keys = Arrays.copyOf(keys, newId * 2);
+                hashes = Arrays.copyOf(hashes, newId * 2);
+                head = Arrays.copyOf(head, newId * 2);
+                tail = Arrays.copyOf(tail, newId * 2);
+            }
+            table[slot] = newId + 1;
+            keys[newId] = key;
+            hashes[newId] = hash;
+            head[newId] = ordinal;
+            tail[newId] = ordinal;
+            if (keyCount * 2 > table.length) {
+                rehash();
+            }
+        } else if (head[id] == NONE) {
+            head[id] = ordinal;
+            tail[id] = ordinal;
+        } else {
+            next[tail[id]] = ordinal;
+            tail[id] = ordinal;
+        }
+        remaining.incrementAndGet();
+        return ordinal;
+    }
+
+    /**
+     * Ordinal of the next unconsumed message of the key, or NONE.
+     */
+    public int current(String key) {
+        int id = id(key);
+        return (id == NONE) ? NONE : head[id];
+    }
+
+    /**
+     * Consumes the next message of the key and returns its ordinal, or NONE.
+     */
+    public int consume(String key) {
+        int id = id(key);
+        if (id == NONE) {
+            return NONE;
+        }
+        int ordinal = head[id];
+        if (ordinal != NONE) {
+            head[id] = next(ordinal);
+            remaining.decrementAndGet();
+        }
+        return ordinal;
+    }
+
+    /**
+     * Visits every unconsumed message, key by key, each chain in arrival order.
+     */
+    public void forEachRemaining(Visitor visitor) {
+        for (int id = 0; id < keyCount; id++) {
+            for (int ordinal = head[id]; ordinal != NONE; ordinal = next(ordinal)) {
+                visitor.visit(key(id), ordinal);
+            }
+        }
+    }
+
+    private int id(String key) {
+        if (file != null) {
+            return file.find(key);
+        }
+        return table[slotOf(key, spread(key.hashCode()))] - 1;
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would go.
+     */
+    private int slotOf(String key, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+            if (hashes[entry - 1] == hash && keys[entry - 1].equals(key)) {
+                break;
+            }
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < keyCount; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // Package-private views used to write the sidecar
+
+    int next(int ordinal) {
+        return (file != null) ? file.next(ordinal) : next[ordinal];
+    }
+
+    int head(int keyId) {
+        return head[keyId];
+    }
+
+    String key(int keyId) {
+        return (file != null) ? file.key(keyId) : keys[keyId];
+    }
+
+    public interface Visitor {
+        void visit(String key, int ordinal);
+    }
+
+    /**
+     * Unconsumed messages.
+     */
+    public int size() {
+        return remaining.get();
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    public int messageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Estimated heap footprint. Restored chains keep only the cursors on the
+     * heap, the rest stays in the mapped sidecar.
+     */
+    public long heapBytes() {
+        if (file != null) {
+            return 4L * head.length;
+        }
+        return 4L * (head.length + tail.length + next.length + hashes.length + table.length) + 8L * keys.length
+                + (long) keyCount * KEY_STRING_BYTES;
+    }
+}
@@ -0,0 +1,195 @@
+package com.logreplay.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-Join Index Builder
+ *
+ * Strategy:
+ * - Split the mapped log into byte ranges, each starting on an "8=FIX"
+ *   boundary, so no message is cut in half.
+ * - Each range is scanned by a fork-join worker into its own partial list.
+ * - Partials are replayed into the target in file order, so the target sees
+ *   the messages exactly in the order of a sequential scan.
+ */
+final class ParallelIndexBuilder {
+
+    private static final byte[] FIX_BEGIN = "8=FIX".getBytes();
+
+    // Below this, splitting costs more than it saves
+    private static final long MIN_RANGE_BYTES = 1 << 20;
+    // Several ranges per thread so a slow range does not stall the build
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Called concurrently from the workers, once per message [start, end).
+     */
+    interface MessageHandler<V> {
+        void onMessage(long start, long end, Sink<V> partial);
+    }
+
+    /**
+     * Receives (key, packed file location, value) entries in file order.
+     */
+    interface Sink<V> {
+        void add(String key, long location, V value);
+    }
+
+    /**
+     * Outcome of one scanned range, entries in file order.
+     */
+    private static final class Partial<V> implements Sink<V> {
+        final List<String> keys = new ArrayList<>();
+        long[] locations = new long[256];
+        final List<V> values = new ArrayList<>();
+        String worker;
+        long bytes;
+        int messages;
+        long nanos;
+
+        @Override
+        public void add(String key, long location, V value) {
+            int i = keys.size();
+            if (i == locations.length) {
+                locations = Arrays.copyOf(locations, i * 2);
+            }
+            locations[i] = location;
+            keys.add(key);
+            values.add(value);
+        }
+    }
+
+    private ParallelIndexBuilder() {
+    }
+
+    /**
+     * Scans the log and feeds every partial into target, in file order.
+     * Returns the number of messages scanned.
+     */
+    static <V> int build(String indexName, MappedLog log, int parallelism, MessageHandler<V> handler,
+            Sink<V> target) {
+        long start = System.nanoTime();
+        long[] bounds = alignedBounds(log, parallelism);
+
+        List<Partial<V>> partials;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            partials = pool.invoke(new ScanTask<>(log, bounds, 0, bounds.length - 1, handler));
+        } finally {
+            pool.shutdown();
+        }
+
+        int messages = 0;
+        for (Partial<V> partial : partials) {
+            for (int i = 0; i < partial.keys.size(); i++) {
+                target.add(partial.keys.get(i), partial.locations[i], partial.values.get(i));
+            }
+            messages += partial.messages;
+        }
+
+        report(indexName, partials, bounds.length - 1, parallelism, log.size(), System.nanoTime() - start);
+        return messages;
+    }
+
+    /**
+     * Range boundaries: bounds[i] is the start of range i, last element is the
+     * file size. Every inner boundary sits on an "8=FIX".
+     */
+    private static long[] alignedBounds(MappedLog log, int parallelism) {
+        long size = log.size();
+        int ranges = (int) Math.max(1, Math.min((long) parallelism * RANGES_PER_THREAD, size / MIN_RANGE_BYTES));
+
+        long first = log.indexOf(FIX_BEGIN, 0, size);
+        if (first == -1) {
+            return new long[] { size, size };
+        }
+
+        long[] bounds = new long[ranges + 1];
+        bounds[0] = first;
+        for (int i = 1; i < ranges; i++) {
+            long approx = Math.max(size / ranges * i, bounds[i - 1] + 1);
+            long aligned = (approx >= size) ? -1 : log.indexOf(FIX_BEGIN, approx, size);
+            bounds[i] = (aligned == -1) ? size : aligned;
+        }
+        bounds[ranges] = size;
+        return bounds;
+    }
+
+    private static final class ScanTask<V> extends RecursiveTask<List<Partial<V>>> {
+        private final MappedLog log;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+        private final MessageHandler<V> handler;
+
+        ScanTask(MappedLog log, long[] bounds, int lo, int hi, MessageHandler<V> handler) {
+            this.log = log;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+            this.handler = handler;
+        }
+
+        @Override
+        protected List<Partial<V>> compute() {
+            if (hi - lo == 1) {
+                List<Partial<V>> single = new ArrayList<>(1);
+                single.add(scan(bounds[lo], bounds[hi]));
+                return single;
+            }
+            int mid = (lo + hi) >>> 1;
+            ScanTask<V> left = new ScanTask<>(log, bounds, lo, mid, handler);
+            left.fork();
+            List<Partial<V>> right = new ScanTask<>(log, bounds, mid, hi, handler).compute();
+            List<Partial<V>> merged = left.join();
+            merged.addAll(right); // Keep file order
+            return merged;
+        }
+
+        private Partial<V> scan(long from, long to) {
+            Partial<V> partial = new Partial<>();
+            long start = System.nanoTime();
+
+            long pos = from;
+            while (pos < to) {
+                long next = log.indexOf(FIX_BEGIN, pos + 1, to);
+                long end = (next == -1) ? to : next;
+                handler.onMessage(pos, end, partial);
+                partial.messages++;
+                pos = end;
+            }
+
+            partial.worker = Thread.currentThread().getName();
+            partial.bytes = to - from;
+            partial.nanos = System.nanoTime() - start;
+            return partial;
+        }
+    }
+
+    private static <V> void report(String indexName, List<Partial<V>> partials, int ranges, int parallelism,
+            long size, long nanos) {
+        // Aggregate ranges per worker thread
+        Map<String, long[]> perWorker = new LinkedHashMap<>(); // name -> {bytes, messages, nanos}
+        for (Partial<V> p : partials) {
+            long[] totals = perWorker.computeIfAbsent(p.worker, k -> new long[3]);
+            totals[0] += p.bytes;
+            totals[1] += p.messages;
+            totals[2] += p.nanos;
+        }
+
+        System.out.println(">> [" + indexName + "] PARALLEL BUILD: " + ranges + " ranges on " + parallelism
+                + " threads, " + (size >> 20) + " MB in " + (nanos / 1_000_000) + "ms");
+        for (Map.Entry<String, long[]> e : perWorker.entrySet()) {
+            long[] t = e.getValue();
+            double seconds = Math.max(t[2], 1) / 1e9;
+            System.out.println(String.format(">> [%s]   %-28s %10d msgs %9.1f MB/s %12.0f msgs/s", indexName,
+                    e.getKey(), t[1], (t[0] / 1048576.0) / seconds, t[1] / seconds));
+        }
+    }
+}
@@ -1,127 +1,390 @@
 package com.logreplay.index;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import com.logreplay.diag.Diagnostics;
+import com.logreplay.fix.FixTokenizer;
+
 import java.io.IOException;
 import java.io.File;
-import java.util.Map;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Simple In-Memory Log Index
  * 
  * Strategy:
- * - Load all original log messages into a HashMap.
- * - Key: OrderID (e.g., "ORDER123")
+ * - Load all original log messages, in arrival order.
+ * - Built in parallel over byte ranges of the mapped file (ParallelIndexBuilder).
+ * - Key: composite KeySpec from -Dreplay.index.key (default "55", e.g. "37+35+34")
  * - Value: The full FIX message content
+ * - Every message of a key is kept (MessageChains): getMessage()/remove()
+ *   walk them in order, so the Nth replayed message of a key is compared
+ *   with the Nth original of that key instead of only the last one.
  * 
  * Pros: Simple, fast O(1) lookups, easy to debug.
  * Cons: Higher memory usage (stores full file in RAM).
+ *
+ * MAPPED mode (for multi-GB logs):
+ * - Memory-maps the file and scans for "8=FIX" directly in the bytes.
+ * - Value: (file offset, length) packed into one long.
+ * - getMessage() materializes the message lazily from the mapping, so heap
+ *   usage scales with the number of messages, not the size of the log.
+ *
+ * OFF_HEAP mode (large logs, latency-sensitive replays):
+ * - Built like MAPPED, then every message is copied, normalized, into a
+ *   direct-memory arena (MessageArena) and the mapping is let go.
+ * - The heap holds a few ints and longs per message, nothing per message
+ *   for the GC to trace; memory of replayed messages is handed back as
+ *   the arena's chunks empty out or are compacted.
+ *
+ * COMPACT mode (large logs, heap-bound):
+ * - Built like MAPPED, then every message is kept on the heap as a
+ *   dictionary-encoded record (TagDictionary): the low-cardinality tags
+ *   (MsgType, CompIDs, Side, Symbol, ...) shrink to 4 bytes each, the rest
+ *   stays raw, and the mapping is let go.
+ * - getRecord() hands out the record as is, for FIXComparator to compare
+ *   coded fields by code; getMessage() decodes it.
+ *
+ * Sidecar (-Dreplay.index.sidecar=true):
+ * - After a build the index is written next to the log ("<log>.idx").
+ * - The next start maps that file instead of re-parsing the log, as long as
+ *   the log's size, mtime and checksum and the key spec are unchanged.
+ *
+ * Log times (built with logTimes, for MISSING_IN_REPLAY deadlines):
+ * - The timestamp each original was logged with, read from the start of
+ *   its line, as millis after the first one ("log millis"), plus the key of
+ *   every ordinal: 8 bytes per message, only when asked for.
+ * - Log millis never go back in file order: a line older than one before
+ *   it takes that line's time (the sample logs run backwards, so there
+ *   every original is due with the first). The count of such lines is
+ *   printed, the delay they get is exactly how far out of order they are.
  */
 public class SimpleLogIndex {
 
-    // Thread-safe map to store messages
-    private final Map<String, String> messageMap = new ConcurrentHashMap<>();
+    public enum Mode {
+        IN_MEMORY, // Full normalized message per key on the heap
+        MAPPED, // Offset + length per key, message read from the mapping on demand
+        OFF_HEAP, // Normalized message in a direct-memory arena, one long per message on the heap
+        COMPACT // Dictionary-encoded normalized message per key on the heap
+    }
+
+    private static final KeySpec DEFAULT_KEY = KeySpec.parse(System.getProperty("replay.index.key", "55"));
+
+    // Packed location: upper 40 bits = file offset, lower 24 bits = length
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    // One tokenizer per build worker / lookup thread
+    private static final ThreadLocal<FixTokenizer> TOKENIZER = ThreadLocal.withInitial(FixTokenizer::new);
+
+    private static final int BUILD_THREADS = Integer.getInteger("replay.index.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final boolean SIDECAR = Boolean.getBoolean("replay.index.sidecar");
+
+    // Line prefix scanned back for the timestamp, e.g. "2025-12-05T06:00:00.538527"
+    private static final int MAX_LINE_PREFIX = 4096;
+    private static final int TIMESTAMP_LENGTH = 26;
+
+    // key -> ordinals of its messages, in arrival order
+    private MessageChains chains = new MessageChains(1024);
+    // IN_MEMORY mode: ordinal -> normalized message (null once consumed)
+    private String[] messages = new String[0];
+    // ordinal -> packed (offset, length) into the log (MAPPED reads, sidecar)
+    private long[] locations = new long[0];
+    // COMPACT mode: ordinal -> encoded message (null once consumed)
+    private byte[][] records = new byte[0][];
+    // IN_MEMORY / COMPACT mode: estimated heap held by the retained messages
+    private final LongAdder messageBytes = new LongAdder();
+    // Build: messages longer than MAX_LENGTH (cut to it), offset of the first one
+    private final LongAdder truncated = new LongAdder();
+    private final LongAccumulator firstTruncated = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    // String header + byte[] header, compact (Latin-1) strings
+    private static final int STRING_OVERHEAD = 40;
+    private static final int RECORD_OVERHEAD = 16;
+    // Warm start: locations are read from the mapped sidecar instead
+    private IndexFile sidecar;
+    // Built with logTimes: ordinal -> log millis / key id, else null
+    private int[] logMillis;
+    private int[] keyIds;
+    private long logTimeBase; // Epoch millis of log millis 0
     private final String filePath;
     private final String indexName;
+    private final Mode mode;
+    private final KeySpec keySpec;
+    private final boolean withLogTimes;
+    private MappedLog mappedLog;
+    private MessageArena arena; // OFF_HEAP only
+    private TagDictionary dictionary; // COMPACT only
 
     public SimpleLogIndex(String name, String filePath) {
+        this(name, filePath, Mode.IN_MEMORY);
+    }
+
+    public SimpleLogIndex(String name, String filePath, Mode mode) {
+        this(name, filePath, mode, DEFAULT_KEY);
+    }
+
+    public SimpleLogIndex(String name, String filePath, Mode mode, KeySpec keySpec) {
+        this(name, filePath, mode, keySpec, false);
+    }
+
+    /**
+     * logTimes: also read every original's log time (see logMillis()), while
+     * the log is still mapped.
+     */
+    public SimpleLogIndex(String name, String filePath, Mode mode, boolean logTimes) {
+        this(name, filePath, mode, DEFAULT_KEY, logTimes);
+    }
+
+    public SimpleLogIndex(String name, String filePath, Mode mode, KeySpec keySpec, boolean logTimes) {
         this.indexName = name;
         this.filePath = filePath;
+        this.mode = mode;
+        this.keySpec = keySpec;
+        this.withLogTimes = logTimes;
         buildIndex();
     }
 
+    /**
+     * Maps the file and hands byte ranges aligned on "8=FIX" to fork-join
+     * workers (see ParallelIndexBuilder). Thread count comes from
+     * -Dreplay.index.threads, defaulting to the number of cores.
+     */
     private void buildIndex() {
-        System.out.println(">> [" + indexName + "] STARTING INDEX BUILD (Stream Mode)...");
+        System.out.println(">> [" + indexName + "] STARTING INDEX BUILD (" + mode + " Mode, key " + keySpec + ")...");
         File logFile = new File(filePath);
-        System.out.println(">> [INDEX INFO] Reading from ABSOLUTE PATH: " + logFile.getAbsolutePath());
+        System.out.println(">> [INDEX INFO] Mapping ABSOLUTE PATH: " + logFile.getAbsolutePath());
 
         long start = System.currentTimeMillis();
         int count = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            // 1. Read ENTIRE file into memory to handle any weird line-breaks or
-            // concatenations
-            StringBuilder fileBuffer = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                fileBuffer.append(line).append('\n'); // Preserve line breaks as whitespace
+        try {
+            MappedLog log = new MappedLog(Paths.get(filePath));
+            if (mode != Mode.IN_MEMORY) {
+                mappedLog = log;
             }
+            if (SIDECAR && loadSidecar(log, start)) {
+                afterBuild(log);
+                return;
+            }
+            if (mode != Mode.IN_MEMORY) {
+                count = ParallelIndexBuilder.build(indexName, log, BUILD_THREADS, this::indexLocation,
+                        this::appendLocation);
+            } else {
+                count = ParallelIndexBuilder.build(indexName, log, BUILD_THREADS,
+                        (from, to, partial) -> indexMessage(log, from, to, partial), this::appendMessage);
+            }
+            if (SIDECAR) {
+                writeSidecar(log);
+            }
+            afterBuild(log);
+        } catch (IOException e) {
+            System.err.println("[" + indexName + "] Failed to load log file: " + e.getMessage());
+        }
 
-            // 2. Normalize Globally: Handle literal "^A" and Pipe "|"
-            // Converting to Standard SOH usually \u0001
-            String rawData = fileBuffer.toString().replace("^A", "\u0001").replace("|", "\u0001");
-
-            // 3. Scan for "8=FIX" (Start of Message)
-            int cursor = 0;
-            while (true) {
-                int startPos = rawData.indexOf("8=FIX", cursor);
-                if (startPos == -1)
-                    break; // No more messages
-
-                // Find start of NEXT message to determine end of CURRENT message
-                int nextPos = rawData.indexOf("8=FIX", startPos + 1);
-
-                String messageChunk;
-                if (nextPos == -1) {
-                    // Last message
-                    messageChunk = rawData.substring(startPos);
-                    cursor = rawData.length();
-                } else {
-                    messageChunk = rawData.substring(startPos, nextPos);
-                    cursor = nextPos;
-                }
+        if (truncated.sum() > 0) {
+            System.err.println("[" + indexName + "] WARNING: " + truncated.sum() + " msgs longer than " + MAX_LENGTH
+                    + " bytes (first at offset " + firstTruncated.get() + ") were cut to that length; their"
+                    + " comparisons use the cut message");
+        }
+        long time = System.currentTimeMillis() - start;
+        System.out.println(">> [" + indexName + "] INDEX READY. Loaded " + size() + " msgs under " + keyCount()
+                + " keys (Parsed " + count + " msgs) in " + time + "ms");
+    }
+
+    /**
+     * Built (or warm-started) with the log still mapped: log times if asked
+     * for, then OFF_HEAP / COMPACT move the messages out of the log and drop
+     * the locations, nothing is read from the log after that.
+     */
+    private void afterBuild(MappedLog log) {
+        if (withLogTimes) {
+            loadLogTimes(log);
+        }
+        if (mode == Mode.OFF_HEAP) {
+            copyToArena(log);
+        } else if (mode == Mode.COMPACT) {
+            encodeRecords(log);
+        }
+        if (mode == Mode.OFF_HEAP || mode == Mode.COMPACT) {
+            mappedLog = null;
+            locations = new long[0];
+            sidecar = null;
+        }
+    }
 
-                // 4. Process the Chunk
-                // Clean up any trailing newlines/garbage from the file read
-                String cleanMsg = messageChunk.trim();
-                processLine(cleanMsg, count);
-                count++;
+    /**
+     * Warm start: adopt the sidecar if it still matches the log. IN_MEMORY
+     * still copies the messages onto the heap, but from the recorded
+     * locations, without tokenizing anything.
+     */
+    private boolean loadSidecar(MappedLog log, long start) throws IOException {
+        Path path = IndexFile.sidecarFor(filePath);
+        IndexFile file = IndexFile.open(path, Paths.get(filePath), log, keySpec);
+        if (file == null) {
+            return false;
+        }
+        chains = new MessageChains(file);
+        sidecar = file;
+        if (mode == Mode.IN_MEMORY) {
+            messages = new String[file.messageCount()];
+            for (int ordinal = 0; ordinal < messages.length; ordinal++) {
+                long location = file.location(ordinal);
+                messages[ordinal] = normalize(log.readString(location >>> LENGTH_BITS, (int) (location & MAX_LENGTH)));
+                messageBytes.add(STRING_OVERHEAD + messages[ordinal].length());
             }
+        }
+        System.out.println(">> [" + indexName + "] WARM START from " + path + ". Loaded " + size() + " msgs under "
+                + keyCount() + " keys in " + (System.currentTimeMillis() - start) + "ms");
+        return true;
+    }
 
+    private void writeSidecar(MappedLog log) {
+        Path path = IndexFile.sidecarFor(filePath);
+        long start = System.currentTimeMillis();
+        try {
+            IndexFile.write(path, Paths.get(filePath), log, keySpec, chains, locations);
+            System.out.println(">> [" + indexName + "] Sidecar written to " + path + " in "
+                    + (System.currentTimeMillis() - start) + "ms");
         } catch (IOException e) {
-            System.err.println("[" + indexName + "] Failed to load log file: " + e.getMessage());
+            System.err.println("[" + indexName + "] Failed to write sidecar " + path + ": " + e.getMessage());
         }
+    }
 
-        long time = System.currentTimeMillis() - start;
-        System.out.println(">> [" + indexName + "] INDEX READY. Loaded " + messageMap.size() + " unique orders (Parsed "
-                + count + " msgs) in " + time + "ms");
+    /**
+     * OFF_HEAP: copies every indexed message into the arena, in file order,
+     * (afterBuild() then drops the mapping and the locations).
+     */
+    private void copyToArena(MappedLog log) {
+        long start = System.currentTimeMillis();
+        int count = chains.messageCount();
+        arena = new MessageArena(count);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            long location = location(ordinal);
+            arena.put(ordinal, log, location >>> LENGTH_BITS, (int) (location & MAX_LENGTH));
+        }
+        arena.seal();
+        System.out.println(">> [" + indexName + "] " + count + " msgs copied off-heap (" + (arena.offHeapBytes() >> 20)
+                + " MB) in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * COMPACT: encodes every indexed message, in file order, building the
+     * dictionary on the way.
+     */
+    private void encodeRecords(MappedLog log) {
+        long start = System.currentTimeMillis();
+        int count = chains.messageCount();
+        dictionary = TagDictionary.fromSystemProperties();
+        records = new byte[count][];
+        byte[] scratch = new byte[1024];
+        long raw = 0;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            long location = location(ordinal);
+            int length = (int) (location & MAX_LENGTH);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            int normalized = log.readNormalized(location >>> LENGTH_BITS, length, scratch);
+            records[ordinal] = dictionary.encode(scratch, normalized);
+            raw += normalized;
+            messageBytes.add(RECORD_OVERHEAD + records[ordinal].length);
+        }
+        System.out.println(">> [" + indexName + "] " + count + " msgs encoded (" + (raw >> 10) + " KB -> "
+                + ((messageBytes.sum() - (long) RECORD_OVERHEAD * count) >> 10) + " KB, dictionary " + dictionary
+                + ") in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Merge step, single thread, file order.
+     */
+    private void appendLocation(String key, long location, Void unused) {
+        int ordinal = chains.append(key);
+        if (ordinal == locations.length) {
+            locations = Arrays.copyOf(locations, Math.max(1024, ordinal * 2));
+        }
+        locations[ordinal] = location;
+    }
+
+    private void appendMessage(String key, long location, String message) {
+        appendLocation(key, location, null);
+        int ordinal = chains.messageCount() - 1;
+        if (ordinal >= messages.length) {
+            messages = Arrays.copyOf(messages, locations.length);
+        }
+        messages[ordinal] = message;
+        messageBytes.add(STRING_OVERHEAD + message.length());
+    }
+
+    /**
+     * MAPPED: keep only where the message lives.
+     */
+    private void indexLocation(long from, long to, ParallelIndexBuilder.Sink<Void> partial) {
+        String orderId = extractOrderId(from, to);
+        if (orderId != null) {
+            partial.add(orderId, location(from, to), null);
+        }
+    }
+
+    /**
+     * Packs the message at [from, to). Longer than MAX_LENGTH it is cut to
+     * it, counted and reported once the build is done.
+     */
+    private long location(long from, long to) {
+        if (to - from > MAX_LENGTH) {
+            truncated.increment();
+            firstTruncated.accumulate(from);
+        }
+        return (from << LENGTH_BITS) | Math.min(to - from, MAX_LENGTH);
     }
 
-    private void processLine(String normalizedMsg, int msgIndex) {
-        // 2. Extract Key (Tag 55 = Symbol, Tag 48 = SecID, or Tag 11 = ClOrdID)
+    /**
+     * IN_MEMORY: materialize the message once at build time.
+     */
+    private void indexMessage(MappedLog log, long from, long to, ParallelIndexBuilder.Sink<String> partial) {
+        // Normalize: Handle literal "^A" and Pipe "|", converting to Standard SOH
+        // Clean up any trailing newlines/garbage from the file read
+        String cleanMsg = normalize(log.readString(from, (int) Math.min(to - from, MAX_LENGTH)));
+
+        // Extract Key (default Tag 55 = Symbol; see KeySpec for 37/11+35 etc.)
         // User specific request: "VOD.L" found in Tag 55.
-        // We will try multiple keys if needed, but prioritize 55 for now.
-        String orderId = extractOrderId(normalizedMsg);
+        String orderId = extractOrderId(cleanMsg);
 
         if (orderId != null) {
             // Debug check for the specific user case
-            if (orderId.equals("VOD.L")) {
-                System.out.println(">> [INDEX CHECK] FOUND VOD.L at Tag 55 in Msg #" + msgIndex + "! Storing...");
+            if (Diagnostics.MESSAGE_ENABLED && orderId.equals("VOD.L")) {
+                Diagnostics.log(">> [INDEX CHECK] FOUND VOD.L in Msg @" + from + "! Storing...");
             }
 
-            // VISUALIZATION: Print table of what we are storing
-            printMessageTable(normalizedMsg, orderId, msgIndex);
+            // VISUALIZATION: Table of what we are storing (TABLE level only)
+            if (Diagnostics.TABLE_ENABLED && Diagnostics.sampled(orderId)) {
+                printMessageTable(cleanMsg, orderId, from);
+            }
 
-            messageMap.put(orderId, normalizedMsg);
-        } else {
-            // Optional: Print warning only if strictly needed to avoid noise
-            // System.out.println("[INDEX] SKIPPING Msg #" + msgIndex + ": No Tag 55
-            // found.");
+            partial.add(orderId, location(from, to), cleanMsg);
         }
     }
 
+    private static String normalize(String raw) {
+        return raw.replace("^A", "\u0001").replace("|", "\u0001").trim();
+    }
+
     /**
-     * Prints a beautiful table of the message content
+     * Writes a beautiful table of the message content to the diagnostics sink.
+     * Built in one buffer so tables from parallel workers do not interleave.
      */
-    private void printMessageTable(String msg, String id, int index) {
-        System.out.println("\n>> [INDEX PARSED Msg #" + index + "] Key: " + id);
-        System.out.println("-------------------------------------------------------------");
-        System.out.println(String.format("| %-6s | %-50s |", "TAG", "VALUE"));
-        System.out.println("-------------------------------------------------------------");
+    private void printMessageTable(String msg, String id, long offset) {
+        StringBuilder table = new StringBuilder(1024);
+        table.append("\n>> [INDEX PARSED Msg @").append(offset).append("] Key: ").append(id).append('\n');
+        table.append("-------------------------------------------------------------\n");
+        table.append(String.format("| %-6s | %-50s |%n", "TAG", "VALUE"));
+        table.append("-------------------------------------------------------------\n");
 
         String[] parts = msg.split("\u0001");
         List<String[]> rows = new ArrayList<>();
@@ -133,9 +396,10 @@ public class SimpleLogIndex {
             if (eq > 0) {
                 String key = part.substring(0, eq);
                 String val = part.substring(eq + 1);
-                // DEBUG: Print weird tags to console immediately
+                // DEBUG: Flag weird tags
                 if (key.startsWith("-")) {
-                    System.out.println(">> [INDEX DEBUG] Found Negative Tag: " + key + " = " + val);
+                    table.append(">> [INDEX DEBUG] Found Negative Tag: ").append(key).append(" = ").append(val)
+                            .append('\n');
                 }
                 rows.add(new String[] { key, val });
             } else {
@@ -157,56 +421,242 @@ public class SimpleLogIndex {
             String val = row[1];
             if (val.length() > 50)
                 val = val.substring(0, 47) + "...";
-            System.out.println(String.format("| %-6s | %-50s |", row[0], val));
+            table.append(String.format("| %-6s | %-50s |%n", row[0], val));
         }
-        System.out.println("-------------------------------------------------------------\n");
+        table.append("-------------------------------------------------------------\n");
+        Diagnostics.log(table);
     }
 
     /**
-     * Extracts Tag 55 (Symbol) based on Visual Inspection of 'VOD.L'
+     * Extracts the key (Tag 55 by default) based on Visual Inspection of 'VOD.L'
      */
     private String extractOrderId(String line) {
-        // Look for Tag 55 (Symbol)
-        return getTagValue(line, "55=");
+        return keySpec.extract(TOKENIZER.get().wrap(line));
+    }
+
+    /**
+     * Same as extractOrderId(String), but straight over the mapped bytes of
+     * [from, to): SOH, "|" and "^A" are all understood by the tokenizer.
+     */
+    private String extractOrderId(long from, long to) {
+        FixTokenizer tokenizer = TOKENIZER.get();
+        mappedLog.wrap(tokenizer, from, (int) Math.min(to - from, MAX_LENGTH));
+        return keySpec.extract(tokenizer);
+    }
+
+    /**
+     * Key of a replayed message, extracted exactly like the originals.
+     */
+    public String keyOf(CharSequence message) {
+        return keySpec.extract(TOKENIZER.get().wrap(message));
+    }
+
+    /**
+     * Next original message of the key not yet removed (the Nth one for the
+     * Nth replayed message), or null.
+     */
+    public String getMessage(String orderId) {
+        int ordinal = chains.current(orderId);
+        if (ordinal == MessageChains.NONE)
+            return null;
+        if (mode == Mode.OFF_HEAP) {
+            return arena.get(ordinal);
+        }
+        if (mode == Mode.COMPACT) {
+            byte[] record = records[ordinal];
+            return (record != null) ? dictionary.decode(record) : null;
+        }
+        if (mode == Mode.MAPPED) {
+            long location = location(ordinal);
+            // Same normalization as the in-memory build
+            return normalize(mappedLog.readString(location >>> LENGTH_BITS, (int) (location & MAX_LENGTH)));
+        }
+        return messages[ordinal];
+    }
+
+    /**
+     * COMPACT: the next original of the key as its encoded record (see
+     * getDictionary()), or null.
+     */
+    public byte[] getRecord(String orderId) {
+        int ordinal = chains.current(orderId);
+        return (ordinal == MessageChains.NONE) ? null : records[ordinal];
     }
 
     /**
-     * Helper to parse "37=RX123^A"
+     * Dictionary of a COMPACT index, null in the other modes.
      */
-    private String getTagValue(String line, String tagKey) {
-        // Finding, for example, "^A37=" ensures we match the tag start
-        String searchKey = "\u0001" + tagKey; // SOH + Tag
-        int start = line.indexOf(searchKey);
+    public TagDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private long location(int ordinal) {
+        return (sidecar != null) ? sidecar.location(ordinal) : locations[ordinal];
+    }
 
-        // Also ensure we handle the first tag in the message which might not have SOH
-        // before it
-        if (start == -1 && line.startsWith(tagKey)) {
-            start = 0; // Special case: tag is at start of line
-            searchKey = tagKey;
+    /**
+     * Reads the log time of every original from the start of its line and
+     * records which key each ordinal belongs to, at build time (before
+     * anything is removed). A line without a timestamp, or older than the
+     * latest one before it, takes that latest time.
+     */
+    private void loadLogTimes(MappedLog log) {
+        long start = System.currentTimeMillis();
+        int count = chains.messageCount();
+        int[] times = new int[count];
+        long base = LogTime.NONE;
+        long previous = 0;
+        int outOfOrder = 0;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            long micros = lineTimeMicros(log, location(ordinal) >>> LENGTH_BITS);
+            if (micros != LogTime.NONE) {
+                if (base == LogTime.NONE) {
+                    base = micros / 1000;
+                }
+                long millis = Math.min(Integer.MAX_VALUE, micros / 1000 - base);
+                if (millis < previous) {
+                    outOfOrder++;
+                }
+                previous = Math.max(previous, millis);
+            }
+            times[ordinal] = (int) previous;
         }
 
-        if (start != -1) {
-            start += searchKey.length();
-            int end = line.indexOf('\u0001', start); // Find next SOH
-            if (end != -1) {
-                return line.substring(start, end);
+        int[] ids = new int[count];
+        for (int id = 0; id < chains.keyCount(); id++) {
+            for (int ordinal = chains.head(id); ordinal != MessageChains.NONE; ordinal = chains.next(ordinal)) {
+                ids[ordinal] = id;
             }
         }
-        return null;
+        logTimeBase = (base == LogTime.NONE) ? 0 : base;
+        keyIds = ids;
+        logMillis = times;
+        if (outOfOrder > 0) {
+            System.err.println("[" + indexName + "] " + outOfOrder + " of " + count + " lines logged earlier than a"
+                    + " line before them: due with that line (MISSING_IN_REPLAY comes no earlier than it)");
+        }
+        System.out.println(">> [" + indexName + "] Log times of " + count + " msgs read in "
+                + (System.currentTimeMillis() - start) + "ms");
     }
 
-    public String getMessage(String orderId) {
-        return messageMap.get(orderId);
+    /**
+     * Timestamp at the start of the line holding the message at offset, or
+     * LogTime.NONE when the line does not start with one.
+     */
+    private static long lineTimeMicros(MappedLog log, long offset) {
+        long lineStart = offset;
+        while (lineStart > 0 && offset - lineStart < MAX_LINE_PREFIX && log.get(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        int length = (int) Math.min(offset - lineStart, TIMESTAMP_LENGTH);
+        return LogTime.parseMicros(log.readString(lineStart, length));
+    }
+
+    /**
+     * Whether log times were read (built with logTimes and the log could be
+     * loaded).
+     */
+    public boolean hasLogTimes() {
+        return logMillis != null;
+    }
+
+    /**
+     * Ordinals handed out so far, consumed or not.
+     */
+    public int messageCount() {
+        return chains.messageCount();
+    }
+
+    /**
+     * Log time of the original at ordinal, in log millis (built with logTimes).
+     */
+    public long logMillis(int ordinal) {
+        return logMillis[ordinal];
+    }
+
+    /**
+     * Epoch millis (log's local time) of log millis 0.
+     */
+    public long logTimeBase() {
+        return logTimeBase;
+    }
+
+    /**
+     * Key of the original at ordinal (built with logTimes).
+     */
+    public String keyAt(int ordinal) {
+        return chains.key(keyIds[ordinal]);
+    }
+
+    /**
+     * Log millis of the key's next original not yet removed (the one
+     * getMessage() returns), or Long.MAX_VALUE when there is none.
+     */
+    public long pendingLogMillis(String orderId) {
+        int ordinal = chains.current(orderId);
+        return (ordinal == MessageChains.NONE) ? Long.MAX_VALUE : logMillis[ordinal];
     }
 
     /**
-     * Removes the message after processing to free up memory slot.
+     * Removes the message after processing to free up memory slot; the next
+     * getMessage() of the key returns its following message.
      */
     public void remove(String orderId) {
-        messageMap.remove(orderId);
+        int ordinal = chains.consume(orderId);
+        if (ordinal == MessageChains.NONE) {
+            return;
+        }
+        if (mode == Mode.IN_MEMORY) {
+            messageBytes.add(-(STRING_OVERHEAD + messages[ordinal].length()));
+            messages[ordinal] = null;
+        } else if (mode == Mode.OFF_HEAP) {
+            arena.remove(ordinal);
+        } else if (mode == Mode.COMPACT) {
+            messageBytes.add(-(RECORD_OVERHEAD + records[ordinal].length));
+            records[ordinal] = null;
+        }
     }
 
+    /**
+     * Messages not yet removed.
+     */
     public int size() {
-        return messageMap.size();
+        return chains.size();
+    }
+
+    public int keyCount() {
+        return chains.keyCount();
+    }
+
+    /**
+     * Estimated heap held by the index: chains, locations and, IN_MEMORY /
+     * COMPACT, the messages not yet removed (and the dictionary).
+     */
+    public long heapBytes() {
+        long logTimes = (logMillis != null) ? 4L * (logMillis.length + keyIds.length) : 0;
+        long arenaBytes = (arena != null) ? arena.heapBytes() : 0;
+        long dictionaryBytes = (dictionary != null) ? dictionary.heapBytes() : 0;
+        return chains.heapBytes() + 8L * locations.length + 8L * messages.length + 8L * records.length
+                + messageBytes.sum() + logTimes + arenaBytes + dictionaryBytes;
+    }
+
+    /**
+     * Off-heap bytes behind the index: the memory-mapped log of a MAPPED
+     * index (paged in on demand), the arena chunks still held OFF_HEAP, 0
+     * IN_MEMORY and COMPACT.
+     */
+    public long mappedBytes() {
+        if (arena != null) {
+            return arena.offHeapBytes();
+        }
+        return mappedLog != null ? mappedLog.size() : 0;
+    }
+
+    public KeySpec getKeySpec() {
+        return keySpec;
+    }
+
+    public Mode getMode() {
+        return mode;
     }
 }
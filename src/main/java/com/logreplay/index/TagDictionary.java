@@ -0,0 +1,302 @@
+package com.logreplay.index;
+
+import com.logreplay.fix.FixTokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary Encoding of Low-Cardinality FIX Tags
+ *
+ * Design:
+ * - A fixed set of tags (-Dreplay.index.dictionaryTags, default BeginString,
+ *   MsgType, Sender/TargetCompID, ExDestination, OrdType, Side,
+ *   TimeInForce, Symbol) whose values repeat across the whole log.
+ * - Per tag, each distinct value gets a 16-bit code on first sight. The
+ *   tables are open-addressing over the value bytes, so the replay side is
+ *   looked up straight from its tokenizer, without a String.
+ * - A record is the normalized message with every coded "tag=value" field
+ *   replaced by 4 bytes (MARKER, tag slot, code): decode() gives the
+ *   message back byte for byte, other fields stay raw. A field never starts
+ *   with MARKER otherwise (tags are digits).
+ * - A tag that runs out of codes keeps its new values raw.
+ * - encode() is build-time, single-threaded; lookups are read-only and
+ *   safe from any thread once the index is built.
+ */
+public final class TagDictionary {
+
+    public static final byte MARKER = 0x02;
+    public static final int CODED_LENGTH = 4; // MARKER, slot, code (u16 big-endian)
+
+    private static final byte SOH = 0x01;
+    private static final int MAX_CODES = 0xFFFF;
+    private static final String DEFAULT_TAGS = "8,35,49,56,100,40,54,59,55";
+
+    private final int[] tags; // slot -> tag
+    private final byte[] slotByTag; // tag -> slot + 1 (unsigned), 0 = not coded (tags < slotByTag.length)
+    private final Slot[] slots;
+
+    /**
+     * Values of one tag: code -> bytes / String, bytes -> code.
+     */
+    private static final class Slot {
+        byte[][] values = new byte[16][];
+        String[] strings = new String[16];
+        int[] table = new int[32]; // code + 1 per entry, 0 = empty
+        int count;
+        long bytes;
+    }
+
+    public TagDictionary(int[] tags) {
+        if (tags.length > 255) {
+            throw new IllegalArgumentException("At most 255 dictionary tags");
+        }
+        this.tags = tags.clone();
+        int maxTag = 0;
+        for (int tag : tags) {
+            if (tag <= 0) {
+                throw new IllegalArgumentException("Invalid dictionary tag: " + tag);
+            }
+            maxTag = Math.max(maxTag, tag);
+        }
+        this.slotByTag = new byte[maxTag + 1];
+        this.slots = new Slot[tags.length];
+        for (int slot = 0; slot < tags.length; slot++) {
+            slotByTag[tags[slot]] = (byte) (slot + 1);
+            slots[slot] = new Slot();
+        }
+    }
+
+    /**
+     * Tags from -Dreplay.index.dictionaryTags (comma-separated).
+     */
+    public static TagDictionary fromSystemProperties() {
+        String[] parts = System.getProperty("replay.index.dictionaryTags", DEFAULT_TAGS).split(",");
+        int[] tags = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            tags[i] = Integer.parseInt(parts[i].trim());
+        }
+        return new TagDictionary(tags);
+    }
+
+    /**
+     * Slot of a coded tag, -1 if the tag is not in the dictionary.
+     */
+    public int slotOf(int tag) {
+        return (tag >= 0 && tag < slotByTag.length) ? (slotByTag[tag] & 0xFF) - 1 : -1;
+    }
+
+    public int tagOf(int slot) {
+        return tags[slot];
+    }
+
+    /**
+     * Code of the value at [offset, offset + length) of the tokenizer's
+     * source, -1 if the value was never seen for that tag (so it differs
+     * from every coded original).
+     */
+    public int codeOf(int slot, FixTokenizer source, int offset, int length) {
+        Slot values = slots[slot];
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.byteAt(offset + i);
+        }
+        int mask = values.table.length - 1;
+        for (int index = spread(hash) & mask, entry; (entry = values.table[index]) != 0; index = (index + 1) & mask) {
+            byte[] value = values.values[entry - 1];
+            if (value.length == length && equals(value, source, offset)) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(byte[] value, FixTokenizer source, int offset) {
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != source.byteAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The value behind a code, shared (no allocation per call).
+     */
+    public String valueOf(int slot, int code) {
+        return slots[slot].strings[code];
+    }
+
+    /**
+     * Slot of the coded field at position of a record.
+     */
+    public static int slotAt(byte[] record, int position) {
+        return record[position + 1] & 0xFF;
+    }
+
+    /**
+     * Code of the coded field at position of a record.
+     */
+    public static int codeAt(byte[] record, int position) {
+        return ((record[position + 2] & 0xFF) << 8) | (record[position + 3] & 0xFF);
+    }
+
+    /**
+     * Build: record of the normalized message in [0, length) of message
+     * (SOH delimiters only), adding new values to the dictionary.
+     */
+    byte[] encode(byte[] message, int length) {
+        byte[] record = new byte[length];
+        int out = 0;
+        int field = 0;
+        while (field < length) {
+            int end = field;
+            while (end < length && message[end] != SOH) {
+                end++;
+            }
+            int code = -1;
+            int slot = -1;
+            int equals = tagEnd(message, field, end);
+            if (equals != -1) {
+                slot = slotOf(parseTag(message, field, equals));
+                if (slot != -1) {
+                    code = codeFor(slot, message, equals + 1, end - equals - 1);
+                }
+            }
+            if (code != -1 && end - field >= CODED_LENGTH) {
+                record[out++] = MARKER;
+                record[out++] = (byte) slot;
+                record[out++] = (byte) (code >>> 8);
+                record[out++] = (byte) code;
+            } else {
+                System.arraycopy(message, field, record, out, end - field);
+                out += end - field;
+            }
+            if (end < length) {
+                record[out++] = SOH;
+            }
+            field = end + 1;
+        }
+        return (out == record.length) ? record : Arrays.copyOf(record, out);
+    }
+
+    /**
+     * The normalized message a record was encoded from.
+     */
+    public String decode(byte[] record) {
+        StringBuilder message = new StringBuilder(record.length + 64);
+        int position = 0;
+        while (position < record.length) {
+            if (record[position] == MARKER && (position == 0 || record[position - 1] == SOH)) {
+                int slot = slotAt(record, position);
+                message.append(tags[slot]).append('=').append(valueOf(slot, codeAt(record, position)));
+                position += CODED_LENGTH;
+            } else {
+                message.append((char) (record[position++] & 0xFF));
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * Index of the '=' ending the tag digits of field [from, to), -1 if the
+     * field does not start with "digits=".
+     */
+    private static int tagEnd(byte[] message, int from, int to) {
+        int i = from;
+        while (i < to && i - from < 10 && message[i] >= '0' && message[i] <= '9') {
+            i++;
+        }
+        return (i > from && i < to && message[i] == '=') ? i : -1;
+    }
+
+    private static int parseTag(byte[] message, int from, int to) {
+        long tag = 0;
+        for (int i = from; i < to; i++) {
+            tag = tag * 10 + (message[i] - '0');
+        }
+        return tag > Integer.MAX_VALUE ? -1 : (int) tag;
+    }
+
+    /**
+     * Code of the value, assigned on first sight; -1 once the tag is full.
+     */
+    private int codeFor(int slot, byte[] message, int offset, int length) {
+        Slot values = slots[slot];
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + message[offset + i];
+        }
+        int mask = values.table.length - 1;
+        int index = spread(hash) & mask;
+        for (int entry; (entry = values.table[index]) != 0; index = (index + 1) & mask) {
+            if (Arrays.equals(values.values[entry - 1], 0, values.values[entry - 1].length, message, offset,
+                    offset + length)) {
+                return entry - 1;
+            }
+        }
+        if (values.count == MAX_CODES) {
+            return -1;
+        }
+        int code = values.count++;
+        if (code == values.values.length) {
+            values.values = Arrays.copyOf(values.values, code * 2);
+            values.strings = Arrays.copyOf(values.strings, code * 2);
+        }
+        values.values[code] = Arrays.copyOfRange(message, offset, offset + length);
+        values.strings[code] = new String(values.values[code], StandardCharsets.ISO_8859_1);
+        values.bytes += 2L * length;
+        values.table[index] = code + 1;
+        if (values.count * 2 > values.table.length) {
+            rehash(values);
+        }
+        return code;
+    }
+
+    private static void rehash(Slot values) {
+        values.table = new int[values.table.length * 2];
+        int mask = values.table.length - 1;
+        for (int code = 0; code < values.count; code++) {
+            byte[] value = values.values[code];
+            int hash = 1;
+            for (byte b : value) {
+                hash = 31 * hash + b;
+            }
+            int index = spread(hash) & mask;
+            while (values.table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            values.table[index] = code + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Distinct values per tag, e.g. "35=4 55=120" for the build summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (int slot = 0; slot < tags.length; slot++) {
+            if (slot > 0) {
+                summary.append(' ');
+            }
+            summary.append(tags[slot]).append('=').append(slots[slot].count);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Estimated heap: values (bytes and Strings) and tables.
+     */
+    long heapBytes() {
+        long total = 0;
+        for (Slot values : slots) {
+            total += values.bytes + 80L * values.count + 4L * values.table.length;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,191 @@
+package com.logreplay.load;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Synthetic FIX Log Generator
+ *
+ * Writes an original log and its replayed counterpart in the FixMSFLogger
+ * line format ("... parse: 8=FIX.4.2^A..."), readable by SimpleLogIndex,
+ * MatchingService and the load harness alike.
+ *
+ * Shape:
+ * - Every order goes through the configured message types in order
+ *   (e.g. D,G,F: new, replace, cancel; 8: an execution report).
+ * - Orders are emitted in windows of WINDOW orders: all Ds of the window,
+ *   then all Gs, ... so lifecycles interleave like a trading day.
+ * - 37 (OrderID) is unique per order, 11 (ClOrdID) per message, and
+ *   55 (Symbol) comes from a small set, as in production.
+ * - mismatchPercent of the replayed messages get a changed price (44) or
+ *   quantity (38); everything else is byte-identical.
+ *
+ * Same seed, same logs.
+ */
+public final class FixLogGenerator {
+
+    public enum Delimiter {
+        CARET_A("^A"), SOH("\u0001"), PIPE("|");
+
+        final String value;
+
+        Delimiter(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final int WINDOW = 1000;
+    private static final String[] SYMBOLS = { "VOD", "KEY", "BARC", "HSBA", "RIO", "BP", "SHEL", "AZN", "ULVR",
+            "GSK", "LLOY", "TSCO" };
+
+    private final int orders;
+    private final String[] messageTypes;
+    private final int mismatchPercent;
+    private final Delimiter delimiter;
+    private final int extraTags;
+    private final long seed;
+
+    public FixLogGenerator(int orders, String messageTypes, int mismatchPercent, Delimiter delimiter,
+            int extraTags, long seed) {
+        this.orders = orders;
+        this.messageTypes = messageTypes.trim().split("\\s*,\\s*");
+        this.mismatchPercent = mismatchPercent;
+        this.delimiter = delimiter;
+        this.extraTags = extraTags;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes both logs and returns the number of messages in each.
+     */
+    public int write(Path original, Path replay) throws IOException {
+        Random random = new Random(seed);
+        Random mismatches = new Random(seed + 1);
+        int messages = 0;
+        String sep = delimiter.value;
+
+        try (BufferedWriter orig = Files.newBufferedWriter(original, StandardCharsets.US_ASCII);
+                BufferedWriter repl = Files.newBufferedWriter(replay, StandardCharsets.US_ASCII)) {
+            for (int windowStart = 0; windowStart < orders; windowStart += WINDOW) {
+                int windowEnd = Math.min(orders, windowStart + WINDOW);
+                for (String type : messageTypes) {
+                    for (int order = windowStart; order < windowEnd; order++) {
+                        long time = 21_600_000L + messages; // ms since midnight, 06:00:00.000 onwards
+                        String symbol = SYMBOLS[(int) ((order * 2654435761L) % SYMBOLS.length)];
+                        int qty = 100 * (1 + random.nextInt(50));
+                        int price = 100 + random.nextInt(900);
+
+                        String fix = message(type, order, messages, symbol, qty, price, time, random, sep);
+                        orig.write(line(time, fix));
+                        orig.newLine();
+
+                        if (mismatches.nextInt(100) < mismatchPercent) {
+                            boolean priced = !"F".equals(type); // Cancels carry no price
+                            fix = priced && mismatches.nextBoolean()
+                                    ? fix.replace(sep + "44=" + price + ".", sep + "44=" + (price + 1) + ".")
+                                    : fix.replace(sep + "38=" + qty + sep, sep + "38=" + (qty + 100) + sep);
+                        }
+                        repl.write(line(time, fix));
+                        repl.newLine();
+                        messages++;
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    private String message(String type, int order, int seq, String symbol, int qty, int price, long time,
+            Random random, String sep) {
+        StringBuilder body = new StringBuilder(256 + extraTags * 16);
+        field(body, 35, type, sep);
+        field(body, 49, "BLPCGAP", sep);
+        field(body, 56, "CGA6", sep);
+        field(body, 34, Integer.toString(1000 + seq), sep);
+        field(body, 52, "20251205-" + clock(time), sep);
+        field(body, 37, Long.toString(8_000_000_000L + order), sep);
+        field(body, 11, clOrdId(order, type), sep);
+        if (!"D".equals(type)) {
+            field(body, 41, clOrdId(order, "D"), sep);
+        }
+        field(body, 55, symbol, sep);
+        field(body, 54, (order & 1) == 0 ? "1" : "2", sep);
+        field(body, 38, Integer.toString(qty), sep);
+        if (!"F".equals(type)) {
+            field(body, 40, "2", sep);
+            field(body, 44, price + ".25", sep);
+            field(body, 59, "0", sep);
+        }
+        if ("8".equals(type)) {
+            field(body, 17, "EX" + seq, sep);
+            field(body, 150, "2", sep);
+            field(body, 39, "2", sep);
+            field(body, 14, Integer.toString(qty), sep);
+            field(body, 151, "0", sep);
+            field(body, 6, price + ".25", sep);
+        }
+        for (int t = 0; t < extraTags; t++) {
+            field(body, 5000 + t, "V" + random.nextInt(100_000), sep);
+        }
+
+        StringBuilder fix = new StringBuilder(body.length() + 32);
+        field(fix, 8, "FIX.4.2", sep);
+        field(fix, 9, String.format("%04d", body.length()), sep);
+        fix.append(body);
+        field(fix, 10, String.format("%03d", random.nextInt(256)), sep);
+        return fix.toString();
+    }
+
+    private static void field(StringBuilder out, int tag, String value, String sep) {
+        out.append(tag).append('=').append(value).append(sep);
+    }
+
+    private static String clOrdId(int order, String type) {
+        return "5DTX" + Integer.toString(order, 36).toUpperCase() + type + "001";
+    }
+
+    private static String line(long time, String fix) {
+        return "2025-12-05T" + clock(time) + "000 client INFO c.c.i.c.u.FixMSFLogger BLPCGAG parse: " + fix;
+    }
+
+    private static String clock(long millis) {
+        return String.format("%02d:%02d:%02d.%03d", (millis / 3_600_000) % 24, (millis / 60_000) % 60,
+                (millis / 1000) % 60, millis % 1000);
+    }
+
+    /**
+     * Usage: FixLogGenerator <original.log> <replayed.log>
+     * Shape from -Dreplay.load.orders, .types, .mismatchPercent, .delimiter,
+     * .extraTags and .seed (see ARCHITECTURE.md).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: FixLogGenerator <original.log> <replayed.log>");
+            return;
+        }
+        FixLogGenerator generator = fromSystemProperties(0);
+        long start = System.currentTimeMillis();
+        int messages = generator.write(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("[Generator] Wrote " + messages + " msgs (" + generator.orders + " orders) to " + args[0]
+                + " and " + args[1] + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Generator configured from the replay.load.* properties; seedOffset
+     * gives each stream of a run its own logs.
+     */
+    static FixLogGenerator fromSystemProperties(int seedOffset) {
+        return new FixLogGenerator(
+                Integer.getInteger("replay.load.orders", 100_000),
+                System.getProperty("replay.load.types", "D,G,F"),
+                Integer.getInteger("replay.load.mismatchPercent", 1),
+                Delimiter.valueOf(System.getProperty("replay.load.delimiter", "CARET_A").toUpperCase()),
+                Integer.getInteger("replay.load.extraTags", 0),
+                Long.getLong("replay.load.seed", 42L) + seedOffset);
+    }
+}
@@ -0,0 +1,220 @@
+package com.logreplay.load;
+
+import com.logreplay.metrics.MetricsSnapshot;
+import com.logreplay.solace.SolaceReplayEngine;
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offline End-to-End Load Harness
+ *
+ * Stands in for the broker: generates an original/replayed log pair per
+ * stream (FixLogGenerator), builds a SolaceReplayEngine over the originals
+ * and submits the replayed payloads in-process at a target rate, through
+ * the same keying, worker pipeline, lookup and comparison as live traffic.
+ *
+ * Measurement:
+ * - Latency is submit to result emission, per message. With a target rate
+ *   each message is stamped with the time it was due, not the time it was
+ *   sent, so a stalled engine shows up in the tail instead of silently
+ *   slowing the source down (coordinated omission).
+ * - Messages due during the first -Dreplay.load.warmupSeconds are processed
+ *   but left out of the latency figures (JIT).
+ * - Throughput is results per second from the first submit to the last
+ *   result.
+ *
+ * Run: ./gradlew runLoadTest -Dreplay.load.orders=200000 -Dreplay.load.rate=50000
+ */
+public final class LoadHarness {
+
+    private static final long DRAIN_TIMEOUT_NANOS = 60_000_000_000L;
+
+    private final SolaceReplayEngine engine;
+    private final String[] streamNames;
+    private final String[][] payloads;
+    private final int total;
+
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder results = new LongAdder();
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private volatile long recordFrom = Long.MAX_VALUE;
+    private volatile long lastResultNanos;
+
+    LoadHarness(Map<String, String> originalLogs, Map<String, String[]> replayPayloads) {
+        this.streamNames = replayPayloads.keySet().toArray(new String[0]);
+        this.payloads = replayPayloads.values().toArray(new String[0][]);
+        int count = 0;
+        for (String[] streamPayloads : payloads) {
+            count += streamPayloads.length;
+        }
+        this.total = count;
+        this.latencies = new long[count];
+        this.engine = new SolaceReplayEngine(originalLogs, this::onResult);
+    }
+
+    /**
+     * Worker threads: one call per replayed message.
+     */
+    private void onResult(ComparisonResult result) {
+        long now = System.nanoTime();
+        if (result.receiveNanos >= recordFrom) {
+            int slot = recorded.getAndIncrement();
+            if (slot < latencies.length) {
+                latencies[slot] = now - result.receiveNanos;
+            }
+        }
+        statuses.computeIfAbsent(result.status, s -> new LongAdder()).increment();
+        lastResultNanos = now;
+        results.increment();
+    }
+
+    /**
+     * Submits every payload, streams interleaved round-robin, at rate
+     * messages per second overall (0: as fast as the engine takes them),
+     * then waits for the last result.
+     */
+    void run(int rate, long warmupNanos) {
+        long periodNanos = rate > 0 ? 1_000_000_000L / rate : 0;
+        long start = System.nanoTime();
+        recordFrom = start + warmupNanos;
+
+        int[] next = new int[payloads.length];
+        long sent = 0;
+        while (sent < total) {
+            for (int s = 0; s < payloads.length; s++) {
+                if (next[s] == payloads[s].length) {
+                    continue;
+                }
+                long due = start + sent * periodNanos;
+                if (periodNanos > 0) {
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        if (wait > 50_000) {
+                            LockSupport.parkNanos(wait - 50_000); // Spin the last 50us, park is coarse
+                        }
+                    }
+                } else {
+                    due = System.nanoTime();
+                }
+                engine.submit(streamNames[s], payloads[s][next[s]++], due);
+                sent++;
+            }
+        }
+        long sendDone = System.nanoTime();
+
+        long deadline = sendDone + DRAIN_TIMEOUT_NANOS;
+        while (results.sum() < total && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+
+        report(start, sendDone, rate);
+    }
+
+    private void report(long start, long sendDone, int rate) {
+        long done = results.sum();
+        double seconds = Math.max(lastResultNanos - start, 1) / 1e9;
+        System.out.println();
+        System.out.println("=============== LOAD TEST ===============");
+        System.out.println(String.format("Submitted   : %d msgs in %.2fs (target %s)", total,
+                (sendDone - start) / 1e9, rate > 0 ? rate + " msg/s" : "unthrottled"));
+        System.out.println(String.format("Completed   : %d msgs in %.2fs = %.0f msg/s sustained", done, seconds,
+                done / seconds));
+        if (done < total) {
+            System.out.println("INCOMPLETE  : " + (total - done) + " results still outstanding after drain timeout");
+        }
+        System.out.println("Statuses    : " + statuses);
+
+        int n = Math.min(recorded.get(), latencies.length);
+        if (n == 0) {
+            System.out.println("Latency     : no samples after warmup, raise replay.load.orders or lower warmup");
+        } else {
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            System.out.println(String.format("Latency (us): p50 %.1f | p99 %.1f | p99.9 %.1f | max %.1f (%d samples)",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted[n - 1] / 1e3, n));
+        }
+        // Whole run, warmup included: the engine has not been sampled before
+        MetricsSnapshot metrics = engine.sampleMetrics();
+        metrics.streams.forEach((stream, m) -> {
+            System.out.println(String.format("[%s] Processed %d | Mismatches %d | Remaining %d | Index ~%d MB heap",
+                    stream, m.processed, m.mismatches, m.remaining, m.indexHeapBytes >> 20));
+            m.latencyMicros.forEach((stage, l) -> System.out.println(String.format(
+                    "    %-17s p50 %9.1f | p99 %9.1f | p99.9 %9.1f us", stage, l.p50, l.p99, l.p999)));
+        });
+        System.out.println("=========================================");
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    /**
+     * FIX part of every line of a log, in file order.
+     */
+    private static String[] readPayloads(Path log) throws IOException {
+        List<String> fix = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int prefix = line.lastIndexOf("parse: ");
+                if (prefix != -1) {
+                    fix.add(line.substring(prefix + "parse: ".length()));
+                }
+            }
+        }
+        return fix.toArray(new String[0]);
+    }
+
+    /**
+     * Configuration from -Dreplay.load.* (see ARCHITECTURE.md); index and
+     * worker knobs (-Dreplay.index.*, -Dreplay.workers) apply as usual.
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(System.getProperty("replay.load.dir", "build/load"));
+        String[] names = System.getProperty("replay.load.streams", "OMS").split(",");
+        int rate = Integer.getInteger("replay.load.rate", 0);
+        long warmupNanos = Long.getLong("replay.load.warmupSeconds", 5) * 1_000_000_000L;
+
+        Files.createDirectories(dir);
+        Map<String, String> originals = new LinkedHashMap<>();
+        Map<String, String[]> replays = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().toUpperCase();
+            Path original = dir.resolve(name.toLowerCase() + "-original.log");
+            Path replay = dir.resolve(name.toLowerCase() + "-replayed.log");
+            int messages = FixLogGenerator.fromSystemProperties(i).write(original, replay);
+            System.out.println("[Load] [" + name + "] Generated " + messages + " msgs: " + original + ", " + replay);
+            originals.put(name, original.toString());
+            replays.put(name, readPayloads(replay));
+        }
+
+        LoadHarness harness = new LoadHarness(originals, replays);
+        try {
+            harness.run(rate, warmupNanos);
+        } finally {
+            harness.shutdown();
+        }
+    }
+}
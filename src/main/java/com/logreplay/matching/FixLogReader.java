@@ -0,0 +1,168 @@
+package com.logreplay.matching;
+
+import com.logreplay.fix.FixTokenizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential Line Reader for FIX Logs
+ *
+ * Design:
+ * - One FileChannel read into a large direct buffer at a time, no per-line
+ *   syscalls and no seeks: the file is read front to back exactly once.
+ * - Lines are split on '\n' and the FIX part located with a plain byte scan
+ *   for the last "parse: " (same as the old ".*parse: " split), no regex and
+ *   no String per line.
+ * - A line cut by the end of the buffer is moved to the front before the
+ *   next read; a line longer than the buffer grows it.
+ */
+final class FixLogReader implements Closeable {
+
+    private static final byte[] PREFIX = "parse: ".getBytes();
+
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long bufferFileOffset; // file offset of buffer index 0
+    private int pos; // start of the next unread line
+    private boolean eof;
+
+    private long lineOffset;
+    private int fixOffset;
+    private int fixLength;
+
+    FixLogReader(Path path, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Advances to the next line that carries a FIX message. Lines without
+     * "parse: " (or with nothing after it) are skipped.
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int end = indexOfNewline(pos);
+            if (end == -1) {
+                if (eof) {
+                    if (pos == buffer.limit()) {
+                        return false;
+                    }
+                    end = buffer.limit(); // Last line without a trailing newline
+                } else {
+                    fill();
+                    continue;
+                }
+            }
+
+            int lineStart = pos;
+            pos = (end < buffer.limit()) ? end + 1 : end;
+            int lineEnd = (end > lineStart && buffer.get(end - 1) == '\r') ? end - 1 : end;
+
+            int prefix = lastIndexOfPrefix(lineStart, lineEnd);
+            if (prefix != -1 && prefix + PREFIX.length < lineEnd) {
+                lineOffset = bufferFileOffset + lineStart;
+                fixOffset = prefix + PREFIX.length;
+                fixLength = lineEnd - fixOffset;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Points the tokenizer at the current FIX message, in place.
+     */
+    FixTokenizer wrap(FixTokenizer tokenizer) {
+        return tokenizer.wrap(buffer, fixOffset, fixLength);
+    }
+
+    /**
+     * Copies the current FIX message into dst at offset.
+     */
+    void copyTo(byte[] dst, int offset) {
+        buffer.get(fixOffset, dst, offset, fixLength);
+    }
+
+    long lineOffset() {
+        return lineOffset;
+    }
+
+    int fixLength() {
+        return fixLength;
+    }
+
+    /**
+     * Bytes consumed so far.
+     */
+    long position() {
+        return bufferFileOffset + pos;
+    }
+
+    private int indexOfNewline(int from) {
+        int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOfPrefix(int from, int to) {
+        for (int i = to - PREFIX.length; i >= from; i--) {
+            if (buffer.get(i) == 'p' && matches(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int at) {
+        for (int k = 1; k < PREFIX.length; k++) {
+            if (buffer.get(at + k) != PREFIX[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the unread tail to the front and reads behind it.
+     */
+    private void fill() throws IOException {
+        int unread = buffer.limit() - pos;
+        if (unread == buffer.capacity()) {
+            // One line fills the whole buffer: grow it
+            ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.position(pos);
+            larger.put(buffer);
+            larger.flip();
+            buffer = larger;
+        } else {
+            buffer.position(pos);
+            buffer.compact();
+            buffer.flip();
+        }
+        bufferFileOffset += pos;
+        pos = 0;
+
+        buffer.position(buffer.limit());
+        buffer.limit(buffer.capacity());
+        int read = channel.read(buffer);
+        if (read == -1) {
+            eof = true;
+        }
+        buffer.flip();
+        buffer.position(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.logreplay.matching;
+
+import com.logreplay.fix.FixTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only store of FIX message bytes, addressed by ordinal.
+ *
+ * Messages are packed back to back into large chunks, so millions of
+ * messages cost a handful of arrays plus 12 bytes each, not one object each.
+ * Single writer; readers may start once writing is finished.
+ */
+final class FixMessageStore {
+
+    private static final int CHUNK_SIZE = 16 << 20;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private byte[] chunk = new byte[0];
+    private int chunkUsed;
+    private long[] locations = new long[1024]; // chunk index << 32 | offset in chunk
+    private int[] lengths = new int[1024];
+    private int count;
+
+    /**
+     * Copies the reader's current FIX message and returns its ordinal.
+     */
+    int add(FixLogReader reader) {
+        int length = reader.fixLength();
+        if (chunkUsed + length > chunk.length) {
+            chunk = new byte[Math.max(CHUNK_SIZE, length)];
+            chunks.add(chunk);
+            chunkUsed = 0;
+        }
+        reader.copyTo(chunk, chunkUsed);
+
+        int ordinal = count++;
+        if (ordinal == locations.length) {
+            locations = Arrays.copyOf(locations, ordinal * 2);
+            lengths = Arrays.copyOf(lengths, ordinal * 2);
+        }
+        locations[ordinal] = ((long) (chunks.size() - 1) << 32) | chunkUsed;
+        lengths[ordinal] = length;
+        chunkUsed += length;
+        return ordinal;
+    }
+
+    FixTokenizer wrap(FixTokenizer tokenizer, int ordinal) {
+        long location = locations[ordinal];
+        return tokenizer.wrap(chunks.get((int) (location >>> 32)), (int) location, lengths[ordinal]);
+    }
+
+    int size() {
+        return count;
+    }
+}
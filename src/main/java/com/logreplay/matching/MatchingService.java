@@ -1,16 +1,44 @@
 package com.logreplay.matching;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import com.logreplay.compare.FIXComparator;
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.index.KeySpec;
+import com.logreplay.index.MessageChains;
+
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.function.Consumer;
 
+/**
+ * Offline Comparison of an Original and a Replayed Log
+ *
+ * Single-pass streaming:
+ * - Phase 1 reads the ORIGINAL front to back once (FixLogReader, large
+ *   direct buffer) and keeps only the FIX bytes of each line, chained per ID.
+ * - Phase 2 reads the REPLAY front to back once and compares every line in
+ *   place against its original in memory: no seeks, no re-reads, no regex.
+ * - Buffer size: -Dreplay.match.bufferMB (default 8).
+ *
+ * Other modes (-Dreplay.match.mode):
+ * - sort: SortMergeComparison, sorted runs on disk, for logs larger than RAM
+ * - parallel: PartitionedComparison, hash-partitioned by ID over all cores
+ */
 public class MatchingService {
 
-    private static final String LOG_PREFIX_REGEX = ".*parse: ";
-    private static final String SOH = "^A";
+    // Prefer OrderID (37), fall back to ClOrdID (11); e.g. -Dreplay.match.key=37/11+35 per message type.
+    // Shared by every mode, as is the read buffer size
+    static final KeySpec KEY = KeySpec.parse(System.getProperty("replay.match.key", "37/11"));
+
+    static final int BUFFER_SIZE = megabytes("replay.match.bufferMB", 8);
+    private static final String MODE = System.getProperty("replay.match.mode", "stream");
+
+    private static final ThreadLocal<FixTokenizer> TOKENIZER = ThreadLocal.withInitial(FixTokenizer::new);
+    private static final ThreadLocal<FixTokenizer> ORIGINAL_TOKENIZER = ThreadLocal.withInitial(FixTokenizer::new);
+
+    private static final FIXComparator COMPARATOR = new FIXComparator();
 
     public static class ComparisonResult {
         public String orderId;
@@ -26,135 +54,164 @@ public class MatchingService {
      * Streams comparison results one by one to the consumer.
      */
     public static void streamComparison(String origPath, String replayPath, Consumer<ComparisonResult> observer) {
-        // Phase 1: Index the ORIGINAL file only (Map ID -> ByteOffset)
-        Map<String, Long> originalIndex = indexLogFile(origPath);
+        // Phase 1: Index the ORIGINAL file only (ID -> FIX bytes of every occurrence)
+        OriginalIndex originalIndex = indexLogFile(origPath);
 
         // Phase 2: Stream replayed file and compare on-the-fly
-        compareWithIndex(origPath, replayPath, originalIndex, observer);
+        compareWithIndex(replayPath, originalIndex, observer);
     }
 
-    private static Map<String, Long> indexLogFile(String path) {
-        Map<String, Long> index = new HashMap<>();
-        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
-            String line;
-            long offset = 0;
-            while ((line = raf.readLine()) != null) {
-                long currentLineStart = offset;
-                long nextOffset = raf.getFilePointer();
+    /**
+     * Every original FIX message per key, in file order: chains hold the
+     * order, the bytes sit in a FixMessageStore under the same ordinal.
+     */
+    static final class OriginalIndex {
+        final MessageChains chains = new MessageChains(1024);
+        private final FixMessageStore messages = new FixMessageStore();
+
+        void add(String id, FixLogReader reader) {
+            chains.append(id);
+            messages.add(reader);
+        }
+
+        FixTokenizer wrap(FixTokenizer tokenizer, int ordinal) {
+            return messages.wrap(tokenizer, ordinal);
+        }
+    }
 
-                String id = extractIdFromLine(line);
+    private static OriginalIndex indexLogFile(String path) {
+        OriginalIndex index = new OriginalIndex();
+        long start = System.nanoTime();
+        try (FixLogReader reader = new FixLogReader(Paths.get(path), BUFFER_SIZE)) {
+            FixTokenizer tokenizer = TOKENIZER.get();
+            while (reader.next()) {
+                String id = KEY.extract(reader.wrap(tokenizer));
                 if (id != null) {
-                    index.put(id, currentLineStart);
+                    index.add(id, reader);
                 }
-
-                offset = nextOffset;
             }
+            report("Indexed original", path, reader.position(), index.chains.messageCount(), start);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return index;
     }
 
-    private static void compareWithIndex(String origPath, String replayPath, Map<String, Long> origIndex,
+    private static void compareWithIndex(String replayPath, OriginalIndex origIndex,
             Consumer<ComparisonResult> observer) {
-        Set<String> processedIds = new HashSet<>();
-
-        try (BufferedReader replayReader = new BufferedReader(new FileReader(replayPath));
-                RandomAccessFile origRaf = new RandomAccessFile(origPath, "r")) {
-
-            String line;
-            while ((line = replayReader.readLine()) != null) {
-                String id = extractIdFromLine(line);
+        long start = System.nanoTime();
+        int lines = 0;
+        try (FixLogReader reader = new FixLogReader(Paths.get(replayPath), BUFFER_SIZE)) {
+            FixTokenizer replay = TOKENIZER.get();
+            FixTokenizer original = ORIGINAL_TOKENIZER.get();
+
+            while (reader.next()) {
+                String id = KEY.extract(reader.wrap(replay));
                 if (id == null)
                     continue;
+                lines++;
 
-                processedIds.add(id);
-                ComparisonResult result = new ComparisonResult(id);
-
-                if (!origIndex.containsKey(id)) {
-                    result.status = "MISSING_IN_ORIGINAL";
-                    observer.accept(result);
-                    continue;
-                }
-
-                long offset = origIndex.get(id);
-                origRaf.seek(offset);
-                String origLine = origRaf.readLine();
-
-                compareLines(origLine, line, result);
-                observer.accept(result);
+                observer.accept(match(id, reader.wrap(replay), origIndex, original));
             }
+            report("Compared replay", replayPath, reader.position(), lines, start);
 
-            // Items missing in replay
-            for (String origId : origIndex.keySet()) {
-                if (!processedIds.contains(origId)) {
-                    ComparisonResult res = new ComparisonResult(origId);
-                    res.status = "MISSING_IN_REPLAY";
-                    observer.accept(res);
-                }
-            }
+            emitMissingInReplay(origIndex, observer);
 
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private static void compareLines(String origLine, String replayLine, ComparisonResult result) {
-        Map<String, String> origMap = parseFix(extractFixMessage(origLine));
-        Map<String, String> replayMap = parseFix(extractFixMessage(replayLine));
-
-        boolean mismatch = false;
-
-        for (Map.Entry<String, String> entry : origMap.entrySet()) {
-            String tag = entry.getKey();
-            String val = entry.getValue();
-
-            if (isIgnoredTag(tag))
-                continue;
+    /**
+     * Nth replayed line of an ID is compared with its Nth original line.
+     */
+    static ComparisonResult match(String id, FixTokenizer replay, OriginalIndex origIndex, FixTokenizer original) {
+        ComparisonResult result = new ComparisonResult(id);
+        int ordinal = origIndex.chains.consume(id);
+        if (ordinal == MessageChains.NONE) {
+            result.status = "MISSING_IN_ORIGINAL";
+            return result;
+        }
 
-            if (!replayMap.containsKey(tag)) {
-                result.tagMismatches.put(tag, new String[] { val, "MISSING" });
-                mismatch = true;
-            } else if (!replayMap.get(tag).equals(val)) {
-                result.tagMismatches.put(tag, new String[] { val, replayMap.get(tag) });
-                mismatch = true;
-            }
+        // Tags of the original only, SendingTime/BodyLength/Checksum ignored
+        Map<String, String[]> diffs = COMPARATOR.compareOriginalTags(origIndex.wrap(original, ordinal), replay);
+        if (diffs != null) {
+            result.tagMismatches = diffs;
         }
+        result.status = (diffs != null) ? "MISMATCH" : "MATCH";
+        return result;
+    }
 
-        result.status = mismatch ? "MISMATCH" : "MATCH";
+    /**
+     * Items missing in replay (every original occurrence never consumed).
+     */
+    static void emitMissingInReplay(OriginalIndex origIndex, Consumer<ComparisonResult> observer) {
+        origIndex.chains.forEachRemaining((origId, ordinal) -> {
+            ComparisonResult res = new ComparisonResult(origId);
+            res.status = "MISSING_IN_REPLAY";
+            observer.accept(res);
+        });
     }
 
-    private static String extractIdFromLine(String line) {
-        String fixMsg = extractFixMessage(line);
-        if (fixMsg == null)
-            return null;
-        Map<String, String> tags = parseFix(fixMsg);
-        return tags.getOrDefault("37", tags.get("11"));
+    /**
+     * -Dproperty in MB, as bytes: 1 to 1024, so the shift cannot
+     * overflow an int.
+     */
+    static int megabytes(String property, int defaultMB) {
+        long mb = Long.getLong(property, defaultMB);
+        if (mb < 1 || mb > 1024) {
+            throw new IllegalArgumentException("-D" + property + " must be 1 to 1024 (MB), got " + mb);
+        }
+        return (int) (mb << 20);
     }
 
-    private static String extractFixMessage(String line) {
-        String[] parts = line.split(LOG_PREFIX_REGEX);
-        if (parts.length < 2)
-            return null;
-        return parts[1];
+    private static void report(String phase, String path, long bytes, int messages, long startNanos) {
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        System.out.println(String.format("[Matching] %s %s: %d msgs, %d MB in %.2fs (%.1f MB/s)", phase, path,
+                messages, bytes >> 20, seconds, (bytes / 1048576.0) / seconds));
     }
 
-    private static boolean isIgnoredTag(String tag) {
-        return tag.equals("52") || tag.equals("9") || tag.equals("10");
+    /**
+     * Runs the comparison selected by -Dreplay.match.mode: stream (default,
+     * originals held in memory), sort (external sort-merge) or parallel
+     * (hash-partitioned).
+     */
+    public static void compare(String origPath, String replayPath, Consumer<ComparisonResult> observer) {
+        switch (MODE.toLowerCase()) {
+            case "sort":
+                SortMergeComparison.compare(origPath, replayPath, observer);
+                break;
+            case "parallel":
+                PartitionedComparison.compare(origPath, replayPath, observer);
+                break;
+            case "stream":
+                streamComparison(origPath, replayPath, observer);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown replay.match.mode: " + MODE);
+        }
     }
 
-    private static Map<String, String> parseFix(String fixMsg) {
-        Map<String, String> tags = new HashMap<>();
-        if (fixMsg == null)
-            return tags;
+    /**
+     * Offline run: MatchingService [original.log] [replayed.log]
+     * Prints one line per non-matching result and a summary per status.
+     */
+    public static void main(String[] args) {
+        String origPath = args.length > 0 ? args[0] : "logs/original.log";
+        String replayPath = args.length > 1 ? args[1] : "logs/replayed.log";
+        if (!Files.isRegularFile(Path.of(origPath)) || !Files.isRegularFile(Path.of(replayPath))) {
+            System.err.println("Usage: MatchingService <original.log> <replayed.log>");
+            System.exit(1);
+        }
 
-        String[] fields = fixMsg.split("\\Q" + SOH + "\\E");
-        for (String field : fields) {
-            String[] kv = field.split("=");
-            if (kv.length == 2) {
-                tags.put(kv[0], kv[1]);
+        Map<String, Integer> counts = new TreeMap<>();
+        long start = System.currentTimeMillis();
+        compare(origPath, replayPath, result -> {
+            counts.merge(result.status, 1, Integer::sum);
+            if (!"MATCH".equals(result.status)) {
+                System.out.println(result.orderId + " " + result.status + " " + result.tagMismatches.keySet());
             }
-        }
-        return tags;
+        });
+        System.out.println("[Matching] " + counts + " in " + (System.currentTimeMillis() - start) + "ms");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package com.logreplay.matching;
+
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.matching.MatchingService.ComparisonResult;
+import com.logreplay.matching.MatchingService.OriginalIndex;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Parallel Hash-Partitioned Comparison
+ *
+ * Strategy:
+ * - Both logs are read at the same time (one sequential reader each) and
+ *   every line is routed to partition hash(ID) % P, so all lines of an ID,
+ *   original and replay, land in the same partition in file order.
+ * - Each partition is then compared on its own fork-join worker, exactly
+ *   like stream mode (Nth replay vs Nth original, then MISSING_IN_REPLAY).
+ * - Workers push results into one lock-free queue that the calling thread
+ *   drains into the observer, so the observer needs no locking.
+ * - Both logs' FIX bytes are held in memory; use sort mode beyond RAM.
+ * - A log that cannot be read, or a partition that fails, aborts the whole
+ *   comparison: partial partitions would report what was never read as
+ *   MISSING.
+ *
+ * Configuration:
+ * - -Dreplay.match.threads: comparison workers (default cores)
+ * - -Dreplay.match.partitions: partitions (default 4 x threads, so a hot
+ *   partition does not leave the other workers idle)
+ */
+public final class PartitionedComparison {
+
+    private static final int THREADS = Integer.getInteger("replay.match.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int PARTITIONS = Integer.getInteger("replay.match.partitions", THREADS * 4);
+
+    private static final int RESULT_QUEUE_CAPACITY = 64 * 1024;
+
+    private PartitionedComparison() {
+    }
+
+    /**
+     * All lines of the IDs hashed to one partition.
+     */
+    private static final class Partition {
+        final OriginalIndex originals = new OriginalIndex();
+        final FixMessageStore replays = new FixMessageStore();
+        String[] replayIds = new String[256];
+
+        void addReplay(String id, FixLogReader reader) {
+            int ordinal = replays.add(reader);
+            if (ordinal == replayIds.length) {
+                replayIds = Arrays.copyOf(replayIds, ordinal * 2);
+            }
+            replayIds[ordinal] = id;
+        }
+    }
+
+    /**
+     * Streams comparison results to the consumer, on the calling thread.
+     * Results of different partitions interleave; within a partition they
+     * keep replay order.
+     */
+    public static void compare(String origPath, String replayPath, Consumer<ComparisonResult> observer) {
+        if (PARTITIONS < 1 || THREADS < 1) {
+            throw new IllegalArgumentException("replay.match.partitions and replay.match.threads must be >= 1, got "
+                    + PARTITIONS + " and " + THREADS);
+        }
+        Partition[] partitions = new Partition[PARTITIONS];
+        for (int p = 0; p < partitions.length; p++) {
+            partitions[p] = new Partition();
+        }
+
+        // Phase 1: route both logs at once, one reader thread each
+        long start = System.nanoTime();
+        FutureTask<Void> origRouter = new FutureTask<>(() -> route(origPath, partitions, true), null);
+        Thread origThread = new Thread(origRouter, "match-route-orig");
+        origThread.start();
+        try {
+            route(replayPath, partitions, false);
+            origRouter.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause()
+                    : new IllegalStateException("Routing failed", e.getCause());
+        } finally {
+            // Replay routing failed or we were interrupted: stop the other reader before leaving
+            origRouter.cancel(true);
+            joinQuietly(origThread);
+        }
+        System.out.println("[Matching] Routed both logs into " + partitions.length + " partitions in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+
+        // Phase 2: one task per partition, results funnelled back to this thread
+        ManyToOneConcurrentArrayQueue<ComparisonResult> results = new ManyToOneConcurrentArrayQueue<>(
+                RESULT_QUEUE_CAPACITY);
+        AtomicInteger pending = new AtomicInteger(partitions.length);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            for (Partition partition : partitions) {
+                pool.execute(() -> {
+                    try {
+                        comparePartition(partition, results, failure);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                });
+            }
+
+            IdleStrategy idle = new BackoffIdleStrategy(100, 10, 1_000, 100_000);
+            long emitted = 0;
+            while (failure.get() == null) {
+                boolean finished = pending.get() == 0; // Read before draining, so nothing is left behind
+                int drained = results.drain(observer);
+                emitted += drained;
+                if (finished && drained == 0 && results.isEmpty()) {
+                    break;
+                }
+                idle.idle(drained);
+            }
+            if (failure.get() != null) {
+                throw new IllegalStateException("Partition failed, results are incomplete", failure.get());
+            }
+            System.out.println("[Matching] Compared " + partitions.length + " partitions on " + THREADS
+                    + " threads: " + emitted + " results in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void route(String path, Partition[] partitions, boolean original) {
+        try (FixLogReader reader = new FixLogReader(Paths.get(path), MatchingService.BUFFER_SIZE)) {
+            FixTokenizer tokenizer = new FixTokenizer();
+            while (reader.next()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // Cancelled, the other log failed
+                }
+                String id = MatchingService.KEY.extract(reader.wrap(tokenizer));
+                if (id == null) {
+                    continue;
+                }
+                Partition partition = partitions[partitionFor(id, partitions.length)];
+                if (original) {
+                    partition.originals.add(id, reader);
+                } else {
+                    partition.addReplay(id, reader);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path, e);
+        }
+    }
+
+    private static int partitionFor(String id, int partitions) {
+        int hash = id.hashCode();
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % partitions;
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops early, without publishing more, once any partition has failed:
+     * nobody drains the queue after that.
+     */
+    private static void comparePartition(Partition partition, ManyToOneConcurrentArrayQueue<ComparisonResult> out,
+            AtomicReference<Exception> failure) {
+        FixTokenizer replay = new FixTokenizer();
+        FixTokenizer original = new FixTokenizer();
+        IdleStrategy idle = new BackoffIdleStrategy(100, 10, 1_000, 1_000_000);
+        Consumer<ComparisonResult> publish = result -> {
+            while (failure.get() == null) {
+                if (out.offer(result)) {
+                    idle.reset();
+                    return;
+                }
+                idle.idle(); // Back-pressure: the observer is slower than the workers
+            }
+            throw new CancellationException("Another partition failed");
+        };
+
+        for (int i = 0; i < partition.replays.size(); i++) {
+            String id = partition.replayIds[i];
+            publish.accept(MatchingService.match(id, partition.replays.wrap(replay, i), partition.originals,
+                    original));
+        }
+        MatchingService.emitMissingInReplay(partition.originals, publish);
+    }
+}
@@ -0,0 +1,434 @@
+package com.logreplay.matching;
+
+import com.logreplay.compare.FIXComparator;
+import com.logreplay.fix.FixTokenizer;
+import com.logreplay.matching.MatchingService.ComparisonResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * External Sort-Merge Comparison (logs larger than RAM)
+ *
+ * Strategy:
+ * - Each log is read once (FixLogReader) and spilled to disk as sorted runs
+ *   of (ID, line number, FIX bytes); only one run is held in memory.
+ * - Runs are k-way merged (in several passes if there are many) into one
+ *   stream per log, ordered by ID, then by line number.
+ * - The two streams are merge-joined: equal IDs are compared pairwise, Nth
+ *   original with Nth replay; an ID on one side only is MISSING on the other.
+ * - Results come out ordered by ID, not in replay order.
+ *
+ * Configuration:
+ * - -Dreplay.match.runMB: FIX bytes buffered per run (default 64)
+ * - -Dreplay.match.tmpDir: where runs are spilled (default java.io.tmpdir),
+ *   removed when the comparison ends
+ */
+public final class SortMergeComparison {
+
+    private static final int RUN_BYTES = MatchingService.megabytes("replay.match.runMB", 64);
+    private static final String TMP_DIR = System.getProperty("replay.match.tmpDir",
+            System.getProperty("java.io.tmpdir"));
+
+    private static final int MERGE_FAN_IN = 64;
+    private static final int STREAM_BUFFER = 256 << 10;
+    private static final int PROGRESS_EVERY = 1_000_000;
+
+    private static final FIXComparator COMPARATOR = new FIXComparator();
+
+    private SortMergeComparison() {
+    }
+
+    /**
+     * Streams comparison results one by one to the consumer, with memory
+     * bounded by the run size.
+     */
+    public static void compare(String origPath, String replayPath, Consumer<ComparisonResult> observer) {
+        Path workDir = null;
+        try {
+            workDir = Files.createTempDirectory(Paths.get(TMP_DIR), "replay-match-");
+            long start = System.currentTimeMillis();
+
+            // Phase 1: sorted runs per log
+            List<Path> origRuns = spill(origPath, workDir, "orig");
+            List<Path> replayRuns = spill(replayPath, workDir, "replay");
+
+            // Phase 2: reduce to at most MERGE_FAN_IN runs per log, then join
+            origRuns = reduce(origRuns, workDir, "orig");
+            replayRuns = reduce(replayRuns, workDir, "replay");
+
+            try (MergedRuns orig = new MergedRuns(origRuns); MergedRuns replay = new MergedRuns(replayRuns)) {
+                join(orig, replay, observer);
+            }
+            System.out.println("[Matching] Sort-merge done in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            deleteQuietly(workDir);
+        }
+    }
+
+    /**
+     * One sequential read of the log, cut into sorted runs of RUN_BYTES.
+     */
+    private static List<Path> spill(String logPath, Path workDir, String side) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        RunBuffer buffer = new RunBuffer(RUN_BYTES);
+        long lines = 0;
+        try (FixLogReader reader = new FixLogReader(Paths.get(logPath), MatchingService.BUFFER_SIZE)) {
+            FixTokenizer tokenizer = new FixTokenizer();
+            while (reader.next()) {
+                String id = MatchingService.KEY.extract(reader.wrap(tokenizer));
+                if (id == null) {
+                    continue;
+                }
+                if (!buffer.fits(reader.fixLength())) {
+                    runs.add(buffer.sortAndWrite(workDir.resolve(side + "-" + runs.size() + ".run")));
+                }
+                buffer.add(id, lines++, reader);
+                if (lines % PROGRESS_EVERY == 0) {
+                    System.out.println("[Matching] Spilling " + side + ": " + lines + " msgs, "
+                            + (reader.position() >> 20) + " MB read, " + runs.size() + " runs");
+                }
+            }
+        }
+        if (buffer.size() > 0 || runs.isEmpty()) {
+            runs.add(buffer.sortAndWrite(workDir.resolve(side + "-" + runs.size() + ".run")));
+        }
+        System.out.println("[Matching] Spilled " + side + ": " + lines + " msgs into " + runs.size() + " runs");
+        return runs;
+    }
+
+    /**
+     * Extra merge passes while there are more runs than can be opened at once.
+     */
+    private static List<Path> reduce(List<Path> runs, Path workDir, String side) throws IOException {
+        int pass = 0;
+        while (runs.size() > MERGE_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MERGE_FAN_IN) {
+                List<Path> group = runs.subList(from, Math.min(from + MERGE_FAN_IN, runs.size()));
+                Path out = workDir.resolve(side + "-p" + pass + "-" + merged.size() + ".run");
+                try (MergedRuns in = new MergedRuns(group); RunWriter writer = new RunWriter(out)) {
+                    while (in.next()) {
+                        writer.write(in.current);
+                    }
+                }
+                for (Path run : group) {
+                    Files.delete(run);
+                }
+                merged.add(out);
+            }
+            System.out.println("[Matching] Merge pass " + pass + " (" + side + "): " + runs.size() + " -> "
+                    + merged.size() + " runs");
+            runs = merged;
+            pass++;
+        }
+        return runs;
+    }
+
+    private static void join(MergedRuns orig, MergedRuns replay, Consumer<ComparisonResult> observer)
+            throws IOException {
+        FixTokenizer origTokenizer = new FixTokenizer();
+        FixTokenizer replayTokenizer = new FixTokenizer();
+        long joined = 0;
+
+        boolean hasOrig = orig.next();
+        boolean hasReplay = replay.next();
+        while (hasOrig || hasReplay) {
+            int cmp = !hasOrig ? 1 : !hasReplay ? -1 : orig.current.key.compareTo(replay.current.key);
+            if (cmp < 0) {
+                ComparisonResult result = new ComparisonResult(orig.current.key);
+                result.status = "MISSING_IN_REPLAY";
+                observer.accept(result);
+                hasOrig = orig.next();
+            } else if (cmp > 0) {
+                ComparisonResult result = new ComparisonResult(replay.current.key);
+                result.status = "MISSING_IN_ORIGINAL";
+                observer.accept(result);
+                hasReplay = replay.next();
+            } else {
+                // Same ID: Nth original against Nth replay
+                ComparisonResult result = new ComparisonResult(replay.current.key);
+                Map<String, String[]> diffs = COMPARATOR.compareOriginalTags(
+                        orig.current.wrap(origTokenizer), replay.current.wrap(replayTokenizer));
+                if (diffs != null) {
+                    result.tagMismatches = diffs;
+                }
+                result.status = (diffs != null) ? "MISMATCH" : "MATCH";
+                observer.accept(result);
+                hasOrig = orig.next();
+                hasReplay = replay.next();
+            }
+            if (++joined % PROGRESS_EVERY == 0) {
+                System.out.println("[Matching] Joined " + joined + " results");
+            }
+        }
+        System.out.println("[Matching] Joined " + joined + " results");
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Files.deleteIfExists(dir);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[Matching] Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One (ID, line number, FIX bytes) record of a run.
+     */
+    private static final class Record {
+        String key;
+        long line;
+        byte[] fix = new byte[512];
+        int length;
+
+        FixTokenizer wrap(FixTokenizer tokenizer) {
+            return tokenizer.wrap(fix, 0, length);
+        }
+    }
+
+    private static final Comparator<Record> ORDER = Comparator.<Record, String>comparing(r -> r.key)
+            .thenComparingLong(r -> r.line);
+
+    /**
+     * In-memory part of the current run: FIX bytes packed in one array.
+     */
+    private static final class RunBuffer {
+        private final byte[] bytes;
+        private int used;
+        private String[] keys = new String[1024];
+        private long[] lines = new long[1024];
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private int[] order = new int[0];
+        private int[] scratch = new int[0];
+        private int count;
+
+        RunBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        int size() {
+            return count;
+        }
+
+        boolean fits(int length) {
+            return count == 0 || used + length <= bytes.length;
+        }
+
+        void add(String key, long line, FixLogReader reader) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            int length = reader.fixLength();
+            if (length > bytes.length) {
+                throw new IllegalArgumentException("Message of " + length + " bytes at line " + line
+                        + " does not fit in a run, raise -Dreplay.match.runMB");
+            }
+            reader.copyTo(bytes, used);
+            keys[count] = key;
+            lines[count] = line;
+            offsets[count] = used;
+            lengths[count] = length;
+            used += length;
+            count++;
+        }
+
+        Path sortAndWrite(Path out) throws IOException {
+            if (order.length < count) {
+                order = new int[keys.length];
+                scratch = new int[keys.length];
+            }
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // Added in line order, so a stable sort by key gives (key, line)
+            sort(0, count);
+            try (RunWriter writer = new RunWriter(out)) {
+                for (int n = 0; n < count; n++) {
+                    int i = order[n];
+                    writer.write(keys[i], lines[i], bytes, offsets[i], lengths[i]);
+                }
+            }
+            Arrays.fill(keys, 0, count, null);
+            count = 0;
+            used = 0;
+            return out;
+        }
+
+        /**
+         * Stable merge sort of order[from, to) by key, on primitive indices.
+         */
+        private void sort(int from, int to) {
+            if (to - from < 16) {
+                for (int i = from + 1; i < to; i++) {
+                    int index = order[i];
+                    int j = i - 1;
+                    for (; j >= from && keys[order[j]].compareTo(keys[index]) > 0; j--) {
+                        order[j + 1] = order[j];
+                    }
+                    order[j + 1] = index;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(from, mid);
+            sort(mid, to);
+            if (keys[order[mid - 1]].compareTo(keys[order[mid]]) <= 0) {
+                return; // Already in order
+            }
+            System.arraycopy(order, from, scratch, from, to - from);
+            for (int i = from, left = from, right = mid; i < to; i++) {
+                boolean takeLeft = right >= to
+                        || (left < mid && keys[scratch[left]].compareTo(keys[scratch[right]]) <= 0);
+                order[i] = takeLeft ? scratch[left++] : scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Record layout: key length (u16), key (ISO-8859-1), line (i64), FIX length (i32), FIX bytes.
+     */
+    private static final class RunWriter implements Closeable {
+        private final DataOutputStream out;
+
+        RunWriter(Path path) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), STREAM_BUFFER));
+        }
+
+        void write(Record record) throws IOException {
+            write(record.key, record.line, record.fix, 0, record.length);
+        }
+
+        void write(String key, long line, byte[] fix, int offset, int length) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.ISO_8859_1);
+            out.writeShort(keyBytes.length);
+            out.write(keyBytes);
+            out.writeLong(line);
+            out.writeInt(length);
+            out.write(fix, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        final Record current = new Record();
+        private byte[] keyBytes = new byte[64];
+
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER));
+        }
+
+        boolean next() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readUnsignedShort();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (keyLength > keyBytes.length) {
+                keyBytes = new byte[keyLength];
+            }
+            in.readFully(keyBytes, 0, keyLength);
+            current.key = new String(keyBytes, 0, keyLength, StandardCharsets.ISO_8859_1);
+            current.line = in.readLong();
+            current.length = in.readInt();
+            if (current.length > current.fix.length) {
+                current.fix = new byte[current.length];
+            }
+            in.readFully(current.fix, 0, current.length);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs into one sorted stream.
+     */
+    private static final class MergedRuns implements Closeable {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> heads = new PriorityQueue<>(
+                (a, b) -> ORDER.compare(a.current, b.current));
+        private RunReader last;
+        Record current;
+
+        MergedRuns(List<Path> runs) throws IOException {
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    if (reader.next()) {
+                        heads.add(reader);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Never handed to try-with-resources: close what was opened
+                try {
+                    close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        boolean next() throws IOException {
+            // Advance the reader whose record was handed out last
+            if (last != null && last.next()) {
+                heads.add(last);
+            }
+            last = heads.poll();
+            current = (last != null) ? last.current : null;
+            return last != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
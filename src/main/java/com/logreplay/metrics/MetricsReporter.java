@@ -0,0 +1,89 @@
+package com.logreplay.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Periodic Metrics Sampling and Scrape Endpoint
+ *
+ * - One daemon thread samples the engine every interval (the only caller
+ *   of its interval histograms) and hands the snapshot to the listener,
+ *   e.g. the gateway's WebSocket broadcast.
+ * - GET /metrics (JDK HttpServer) returns the latest snapshot as Prometheus
+ *   text; a scrape never resets anything, so any number of scrapers and the
+ *   UI see the same intervals.
+ */
+public final class MetricsReporter {
+
+    private final Supplier<MetricsSnapshot> sampler;
+    private final Consumer<MetricsSnapshot> listener;
+    private final ScheduledExecutorService scheduler;
+    private volatile MetricsSnapshot latest;
+    private HttpServer http;
+
+    public MetricsReporter(Supplier<MetricsSnapshot> sampler, Consumer<MetricsSnapshot> listener) {
+        this.sampler = sampler;
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println("[Metrics] Sampling every " + intervalMillis + "ms");
+    }
+
+    /**
+     * Serves GET /metrics on the port (all interfaces).
+     */
+    public void serve(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/metrics", exchange -> {
+            MetricsSnapshot snapshot = latest;
+            byte[] body = (snapshot != null ? snapshot.toText() : "").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        http.start();
+        System.out.println("[Metrics] Scrape endpoint on http://0.0.0.0:" + port + "/metrics");
+    }
+
+    private void sample() {
+        try {
+            MetricsSnapshot snapshot = sampler.get();
+            latest = snapshot;
+            listener.accept(snapshot);
+        } catch (Exception e) {
+            System.err.println("[Metrics] Sampling error: " + e.getMessage());
+        }
+    }
+
+    public MetricsSnapshot latest() {
+        return latest;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (http != null) {
+            http.stop(0);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.logreplay.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One Sampling Interval of Engine Metrics
+ *
+ * Sent as-is (Gson) to the UI as a "METRICS" message, and rendered as
+ * Prometheus text by toText() for the scrape endpoint.
+ */
+public class MetricsSnapshot {
+
+    public String type = "METRICS"; // Discriminator for UI
+    public long timestamp; // Epoch millis at the end of the interval
+    public double intervalSeconds;
+    public Map<String, StreamMetrics> streams = new LinkedHashMap<>();
+    public List<ClientMetrics> clients = new ArrayList<>(); // Filled in by the gateway
+
+    public static class StreamMetrics {
+        public long processed; // Totals since start
+        public long mismatches;
+        public long missing; // Originals evicted as MISSING_IN_REPLAY
+        public double throughput; // Results per second over the interval
+        public int queueDepth; // Items waiting in the stream's worker queues
+        public int remaining; // Originals not yet replayed
+        public long indexHeapBytes; // Estimated
+        public long indexMappedBytes; // Off-heap: mapped log (MAPPED) or arena (OFF_HEAP)
+        public Map<String, Latency> latencyMicros = new LinkedHashMap<>(); // Per stage, over the interval
+    }
+
+    /**
+     * One WebSocket client's outbound queue.
+     */
+    public static class ClientMetrics {
+        public String client; // Remote address
+        public String policy; // Slow-consumer policy
+        public String filter; // Subscription, "ALL" until the client subscribes
+        public String encoding; // Result frames: JSON or BINARY
+        public int queued; // Results waiting for the client to catch up
+        public long dropped; // Totals since connect
+        public long conflated;
+        public long filtered; // Left out by the client's subscription
+        public long sentResults;
+        public long sentFrames;
+        public long sentBytes; // Result frame payloads
+        public double lagMillis; // Age of the oldest waiting result since the engine received it
+        public boolean backlogged; // Last frame still buffered in the socket
+    }
+
+    public static class Latency {
+        public long count;
+        public double p50;
+        public double p99;
+        public double p999;
+        public double max;
+        public double mean;
+
+        static Latency of(Histogram nanos) {
+            Latency latency = new Latency();
+            latency.count = nanos.getTotalCount();
+            if (latency.count > 0) {
+                latency.p50 = nanos.getValueAtPercentile(50.0) / 1e3;
+                latency.p99 = nanos.getValueAtPercentile(99.0) / 1e3;
+                latency.p999 = nanos.getValueAtPercentile(99.9) / 1e3;
+                latency.max = nanos.getMaxValue() / 1e3;
+                latency.mean = nanos.getMean() / 1e3;
+            }
+            return latency;
+        }
+    }
+
+    /**
+     * Prometheus text exposition format, one series per stream (and stage).
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder(4096);
+        header(out, "replay_processed_total", "counter", "Replayed messages compared");
+        streams.forEach((name, s) -> sample(out, "replay_processed_total", labels(name), s.processed));
+        header(out, "replay_mismatches_total", "counter", "Replayed messages with differences");
+        streams.forEach((name, s) -> sample(out, "replay_mismatches_total", labels(name), s.mismatches));
+        header(out, "replay_missing_in_replay_total", "counter", "Originals not replayed within the grace window");
+        streams.forEach((name, s) -> sample(out, "replay_missing_in_replay_total", labels(name), s.missing));
+        header(out, "replay_throughput", "gauge", "Results per second over the last interval");
+        streams.forEach((name, s) -> sample(out, "replay_throughput", labels(name), s.throughput));
+        header(out, "replay_queue_depth", "gauge", "Messages waiting in worker queues");
+        streams.forEach((name, s) -> sample(out, "replay_queue_depth", labels(name), s.queueDepth));
+        header(out, "replay_index_remaining", "gauge", "Original messages not yet replayed");
+        streams.forEach((name, s) -> sample(out, "replay_index_remaining", labels(name), s.remaining));
+        header(out, "replay_index_heap_bytes", "gauge", "Estimated heap held by the index");
+        streams.forEach((name, s) -> sample(out, "replay_index_heap_bytes", labels(name), s.indexHeapBytes));
+        header(out, "replay_index_mapped_bytes", "gauge", "Off-heap bytes behind the index (mapped log or arena)");
+        streams.forEach((name, s) -> sample(out, "replay_index_mapped_bytes", labels(name), s.indexMappedBytes));
+
+        header(out, "replay_stage_latency_micros", "summary", "Per-stage latency over the last interval");
+        streams.forEach((name, s) -> s.latencyMicros.forEach((stage, l) -> {
+            String labels = labels(name) + ",stage=\"" + stage + "\"";
+            sample(out, "replay_stage_latency_micros", labels + ",quantile=\"0.5\"", l.p50);
+            sample(out, "replay_stage_latency_micros", labels + ",quantile=\"0.99\"", l.p99);
+            sample(out, "replay_stage_latency_micros", labels + ",quantile=\"0.999\"", l.p999);
+            sample(out, "replay_stage_latency_micros", labels + ",quantile=\"1\"", l.max);
+            sample(out, "replay_stage_latency_micros_count", labels, l.count);
+        }));
+
+        header(out, "replay_ws_client_queued", "gauge", "Results waiting for a slow WebSocket client");
+        clients.forEach(c -> sample(out, "replay_ws_client_queued", clientLabels(c), c.queued));
+        header(out, "replay_ws_client_lag_millis", "gauge", "Age of the oldest result waiting for the client");
+        clients.forEach(c -> sample(out, "replay_ws_client_lag_millis", clientLabels(c), c.lagMillis));
+        header(out, "replay_ws_client_dropped_total", "counter", "Results dropped for the client (policy)");
+        clients.forEach(c -> sample(out, "replay_ws_client_dropped_total", clientLabels(c), c.dropped));
+        header(out, "replay_ws_client_conflated_total", "counter", "Results conflated for the client");
+        clients.forEach(c -> sample(out, "replay_ws_client_conflated_total", clientLabels(c), c.conflated));
+        header(out, "replay_ws_client_filtered_total", "counter", "Results left out by the client's subscription");
+        clients.forEach(c -> sample(out, "replay_ws_client_filtered_total", clientLabels(c), c.filtered));
+        header(out, "replay_ws_client_sent_total", "counter", "Results sent to the client");
+        clients.forEach(c -> sample(out, "replay_ws_client_sent_total", clientLabels(c), c.sentResults));
+        header(out, "replay_ws_client_sent_bytes_total", "counter", "Result frame bytes sent to the client");
+        clients.forEach(c -> sample(out, "replay_ws_client_sent_bytes_total", clientLabels(c), c.sentBytes));
+        return out.toString();
+    }
+
+    private static String clientLabels(ClientMetrics client) {
+        return "client=\"" + client.client + "\",policy=\"" + client.policy + "\"";
+    }
+
+    private static String labels(String stream) {
+        return "stream=\"" + stream + "\"";
+    }
+
+    private static void header(StringBuilder out, String metric, String type, String help) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String labels, double value) {
+        out.append(metric).append('{').append(labels).append("} ");
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
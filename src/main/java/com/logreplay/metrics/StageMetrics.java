@@ -0,0 +1,65 @@
+package com.logreplay.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-Stage Latency Recorders for One Replay Stream
+ *
+ * Design:
+ * - One HdrHistogram Recorder per stage: recordValue() is wait-free, so
+ *   dispatcher and workers record without locks or allocation.
+ * - interval() swaps each recorder's active histogram and summarizes what
+ *   was recorded since the previous call; the previous interval histogram
+ *   is recycled, so sampling does not allocate histograms either.
+ * - interval() has a single caller (the metrics reporter); recorders keep
+ *   working while it runs.
+ */
+public final class StageMetrics {
+
+    public enum Stage {
+        PARSE("receive_to_parse"), // Receipt to keyed and handed to a worker (dispatcher)
+        QUEUE("queue_wait"), // Waiting in the worker queue
+        LOOKUP("lookup"), // Index lookup of the original
+        COMPARE("compare"), // Tag comparison
+        PUBLISH("publish"), // Result handler (UI broadcast) and ack
+        TOTAL("total"); // Receipt to published
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Recorder[] recorders = new Recorder[STAGES.length];
+    private final Histogram[] recycled = new Histogram[STAGES.length];
+
+    public StageMetrics() {
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(3); // Auto-resizing, 3 significant digits
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        recorders[stage.ordinal()].recordValue(Math.max(0, nanos));
+    }
+
+    /**
+     * Latency per stage since the previous call, in stage order.
+     */
+    public synchronized Map<String, MetricsSnapshot.Latency> interval() {
+        Map<String, MetricsSnapshot.Latency> latencies = new LinkedHashMap<>();
+        for (int i = 0; i < recorders.length; i++) {
+            Histogram histogram = recorders[i].getIntervalHistogram(recycled[i]);
+            recycled[i] = histogram;
+            latencies.put(STAGES[i].label, MetricsSnapshot.Latency.of(histogram));
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,137 @@
+package com.logreplay.pipeline;
+
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Key-Partitioned Worker Pipeline
+ *
+ * Design:
+ * - N worker threads, each draining its own lock-free bounded queue.
+ * - Items are routed by a hash of their key, so all items of one key are
+ *   handled by the same worker in submission order.
+ * - Back-pressure: submit() spins, then yields, then parks while the target
+ *   queue is full, which stalls the producer instead of dropping work.
+ */
+public class PartitionedPipeline<T> {
+
+    private static final int DRAIN_LIMIT = 256;
+
+    private final String name;
+    private final Consumer<T> handler;
+    private final ManyToOneConcurrentArrayQueue<T>[] queues;
+    private final Thread[] workers;
+    private final AtomicLong backPressureEvents = new AtomicLong();
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public PartitionedPipeline(String name, int workerCount, int queueCapacity, Consumer<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        this.queues = new ManyToOneConcurrentArrayQueue[workerCount];
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            ManyToOneConcurrentArrayQueue<T> queue = new ManyToOneConcurrentArrayQueue<>(queueCapacity);
+            queues[i] = queue;
+            workers[i] = new Thread(() -> workLoop(queue), name + "-worker-" + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        System.out.println("[" + name + "] Pipeline started: " + workers.length + " workers x "
+                + queues[0].capacity() + " slots");
+    }
+
+    /**
+     * Hands the item to the worker owning keyHash. Blocks while that worker's
+     * queue is full.
+     */
+    public void submit(int keyHash, T item) {
+        ManyToOneConcurrentArrayQueue<T> queue = queues[partitionFor(keyHash)];
+        if (queue.offer(item)) {
+            return;
+        }
+
+        backPressureEvents.incrementAndGet();
+        IdleStrategy idle = new BackoffIdleStrategy(100, 10, 1_000, 1_000_000);
+        while (!queue.offer(item)) {
+            if (!running) {
+                throw new IllegalStateException("[" + name + "] Pipeline stopped");
+            }
+            idle.idle();
+        }
+    }
+
+    public int partitionFor(int keyHash) {
+        int spread = keyHash ^ (keyHash >>> 16);
+        return (spread & 0x7fffffff) % queues.length;
+    }
+
+    private void workLoop(ManyToOneConcurrentArrayQueue<T> queue) {
+        IdleStrategy idle = new BackoffIdleStrategy(100, 10, 1_000, 100_000);
+        while (running || !queue.isEmpty()) {
+            idle.idle(queue.drain(this::handle, DRAIN_LIMIT));
+        }
+    }
+
+    private void handle(T item) {
+        try {
+            handler.accept(item);
+        } catch (Exception e) {
+            // Keep the worker alive, one bad message must not stop its partition
+            System.err.println("[" + name + "] Processing error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Items waiting across all partitions.
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (ManyToOneConcurrentArrayQueue<T> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Fill level of the fullest partition, 0.0 - 1.0.
+     */
+    public double maxFillRatio() {
+        double max = 0;
+        for (ManyToOneConcurrentArrayQueue<T> queue : queues) {
+            max = Math.max(max, (double) queue.size() / queue.capacity());
+        }
+        return max;
+    }
+
+    public int workerCount() {
+        return workers.length;
+    }
+
+    public long getBackPressureEvents() {
+        return backPressureEvents.get();
+    }
+
+    /**
+     * Lets the workers drain what is queued, then stops them.
+     */
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.logreplay.simple;
+
+import com.logreplay.index.LogTime;
+import com.logreplay.transport.AeronTransport;
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.driver.MediaDriver;
+import org.HdrHistogram.Histogram;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timestamp-Faithful Log Replay Publisher
+ *
+ * Reads logs in the original format ("<timestamp> ... parse: <FIX>", e.g.
+ * OneOmsFixSrcOriginal.log) and re-emits each FIX message on Aeron, to the
+ * engine's AeronTransport or SimpleSubscriber, with the gaps between the
+ * log timestamps divided by -Dreplay.publish.speed (1 = real time, 10 = ten
+ * times faster, 0 = as fast as the subscriber takes them).
+ *
+ * Design:
+ * - One log per stream, on the stream's Aeron stream id (same order as the
+ *   engine). All logs are merged by timestamp on one thread, so OMS and
+ *   ONC keep their relative timing.
+ * - Log time never goes back: a line older than the previous one of its log
+ *   (or without a timestamp) is sent right after it. Such lines are
+ *   counted, warned about on the first one and reported per log: a log in
+ *   descending order has no gaps left to pace. Gaps longer than
+ *   -Dreplay.publish.maxGapMs (e.g. overnight) can be cut short.
+ * - Pacing: each message has a due time on the monotonic clock; the thread
+ *   parks until replay.publish.spinMicros before it (park overshoots by
+ *   the OS timer slack, 50us on Linux), then spins. Lateness
+ *   (sent - due) goes into a histogram: that is the jitter.
+ * - A message the subscriber cannot take yet (BACK_PRESSURED) is retried,
+ *   never dropped; it shows up as lateness and a lower achieved rate.
+ * - Every second and at the end: achieved msg/s, achieved speed (log
+ *   seconds per second) against the target, lateness percentiles.
+ *
+ * Run: ./gradlew runPublisher --args="OMS=logs/OneOmsFixSrcOriginal.log" -Dreplay.publish.speed=10
+ * (default: the -Dreplay.streams logs), against ./gradlew runGateway -Dreplay.transport=aeron.
+ */
+public final class SimplePublisher {
+
+    private static final String DEFAULT_STREAMS = "OMS=logs/OneOmsFixSrcOriginal.log,ONC=logs/OneOncFixSrcOriginal.log";
+    private static final double SPEED = Double.parseDouble(System.getProperty("replay.publish.speed", "1"));
+    private static final long MAX_GAP_MICROS = Long.getLong("replay.publish.maxGapMs", 0) * 1000;
+    private static final long SPIN_NANOS = Long.getLong("replay.publish.spinMicros", 100) * 1000;
+    private static final boolean EMBEDDED_DRIVER = Boolean
+            .parseBoolean(System.getProperty("replay.publish.embeddedDriver", "false"));
+    private static final long CONNECT_TIMEOUT_NANOS = Long.getLong("replay.publish.connectTimeoutSeconds", 10)
+            * 1_000_000_000L;
+
+    private static final long REPORT_NANOS = 1_000_000_000L;
+    private static final long NO_TIMESTAMP = LogTime.NONE;
+    private static final String PREFIX = "parse: ";
+
+    /**
+     * One log replayed onto its Aeron stream: the current line and its log
+     * time in micros, which never goes back.
+     */
+    private static final class Source {
+        final String name;
+        final BufferedReader reader;
+        final Publication publication;
+        final UnsafeBuffer buffer;
+        String fix;
+        long micros = NO_TIMESTAMP;
+        long sent;
+        long clamped; // Lines older than the latest one before them
+
+        Source(String name, BufferedReader reader, Publication publication) {
+            this.name = name;
+            this.reader = reader;
+            this.publication = publication;
+            this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(publication.maxMessageLength()));
+        }
+
+        /**
+         * Advances to the next line with a FIX message; false at the end.
+         */
+        boolean next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int prefix = line.lastIndexOf(PREFIX);
+                if (prefix == -1 || prefix + PREFIX.length() == line.length()) {
+                    continue;
+                }
+                fix = line.substring(prefix + PREFIX.length());
+                long parsed = LogTime.parseMicros(line);
+                if (parsed != NO_TIMESTAMP && parsed < micros && clamped++ == 0) {
+                    System.err.println("[" + name + "] WARNING: log time goes back (" + line.substring(0,
+                            Math.min(prefix, 32)).trim() + "...): such lines are sent without a gap, not paced");
+                }
+                micros = Math.max(micros, parsed);
+                return true;
+            }
+            fix = null;
+            return false;
+        }
+    }
+
+    private final List<Source> sources;
+    private final Histogram lateness = new Histogram(3);
+    private long backPressured;
+
+    private SimplePublisher(List<Source> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Publishes every log to the end.
+     */
+    private void run() throws IOException {
+        long base = Long.MAX_VALUE;
+        for (Source source : sources) {
+            if (source.next() && source.micros != NO_TIMESTAMP) {
+                base = Math.min(base, source.micros);
+            }
+        }
+        boolean paced = SPEED > 0 && base != Long.MAX_VALUE;
+
+        long start = System.nanoTime();
+        long nextReport = start + REPORT_NANOS;
+        long skippedMicros = 0; // Cut from gaps longer than maxGapMs
+        long lastMicros = base;
+        long reportedMicros = base;
+        long total = 0;
+        long reportedTotal = 0;
+        long reportedNanos = start;
+
+        Source source;
+        while ((source = earliest(base)) != null) {
+            long micros = source.micros == NO_TIMESTAMP ? lastMicros : Math.max(source.micros, lastMicros);
+            if (MAX_GAP_MICROS > 0 && micros - lastMicros > MAX_GAP_MICROS) {
+                skippedMicros += micros - lastMicros - MAX_GAP_MICROS;
+            }
+            lastMicros = micros;
+
+            long now;
+            if (paced) {
+                long due = start + (long) ((micros - base - skippedMicros) * 1000 / SPEED);
+                now = waitUntil(due);
+                lateness.recordValue(Math.max(0, now - due) / 1000);
+            } else {
+                now = System.nanoTime();
+            }
+            publish(source);
+            total++;
+            source.next();
+
+            if (now >= nextReport) {
+                report(total - reportedTotal, now - reportedNanos, lastMicros - reportedMicros, total, paced);
+                reportedTotal = total;
+                reportedNanos = now;
+                reportedMicros = lastMicros;
+                nextReport = now + REPORT_NANOS;
+            }
+        }
+
+        long end = System.nanoTime();
+        double seconds = Math.max(end - start, 1) / 1e9;
+        double logSeconds = (lastMicros - base - skippedMicros) / 1e6;
+        System.out.println();
+        System.out.println("=============== PUBLISHED ===============");
+        for (Source s : sources) {
+            System.out.println(String.format("[%s] %d msgs on %s stream %d", s.name, s.sent, s.publication.channel(),
+                    s.publication.streamId()));
+            if (s.clamped > 0) {
+                System.out.println(String.format("[%s] %d lines older than a line before them, sent unpaced", s.name,
+                        s.clamped));
+            }
+        }
+        System.out.println(String.format("Achieved    : %d msgs in %.2fs = %.0f msg/s", total, seconds, total / seconds));
+        if (paced && logSeconds > 0) {
+            System.out.println(String.format("Target      : %.2fs of log at %sx = %.0f msg/s", logSeconds, SPEED,
+                    total / (logSeconds / SPEED)));
+        }
+        if (paced) {
+            System.out.println(String.format("Lateness(us): p50 %d | p99 %d | p99.9 %d | max %d",
+                    lateness.getValueAtPercentile(50), lateness.getValueAtPercentile(99),
+                    lateness.getValueAtPercentile(99.9), lateness.getMaxValue()));
+        }
+        System.out.println("Back-pressured offers: " + backPressured);
+        System.out.println("=========================================");
+    }
+
+    /**
+     * Source whose current line comes first in log time, null when all are
+     * done.
+     */
+    private Source earliest(long base) {
+        Source earliest = null;
+        long earliestMicros = Long.MAX_VALUE;
+        for (Source source : sources) {
+            if (source.fix == null) {
+                continue;
+            }
+            long micros = source.micros == NO_TIMESTAMP ? base : source.micros;
+            if (earliest == null || micros < earliestMicros) {
+                earliest = source;
+                earliestMicros = micros;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Parks until SPIN_NANOS before due (park is coarse), spins the rest.
+     * Returns the time it returned at.
+     */
+    private static long waitUntil(long due) {
+        long now;
+        while ((now = System.nanoTime()) < due) {
+            long wait = due - now;
+            if (wait > SPIN_NANOS) {
+                LockSupport.parkNanos(wait - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return now;
+    }
+
+    private void publish(Source source) {
+        if (source.fix.length() > source.buffer.capacity()) {
+            System.err.println("[" + source.name + "] SKIPPING: message of " + source.fix.length()
+                    + " bytes, max " + source.buffer.capacity());
+            return;
+        }
+        int length = source.buffer.putStringWithoutLengthAscii(0, source.fix);
+        long result;
+        while ((result = source.publication.offer(source.buffer, 0, length)) < 0) {
+            if (result == Publication.CLOSED || result == Publication.MAX_POSITION_EXCEEDED) {
+                throw new IllegalStateException("[" + source.name + "] Publication can no longer be used: " + result);
+            }
+            backPressured++; // BACK_PRESSURED, ADMIN_ACTION or subscriber gone (NOT_CONNECTED): retry
+            Thread.onSpinWait();
+        }
+        source.sent++;
+    }
+
+    private void report(long sent, long nanos, long logMicros, long total, boolean paced) {
+        double seconds = nanos / 1e9;
+        StringBuilder line = new StringBuilder(String.format("[Publisher] %.0f msg/s | Total %d", sent / seconds,
+                total));
+        if (paced) {
+            line.append(String.format(" | Speed %.2fx (target %sx) | Lateness p99 %dus max %dus",
+                    logMicros / 1e6 / seconds, SPEED, lateness.getValueAtPercentile(99), lateness.getMaxValue()));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Blocks until every publication has a subscriber, or fails.
+     */
+    private static void awaitSubscribers(List<Source> sources) {
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        for (Source source : sources) {
+            while (!source.publication.isConnected()) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("No subscriber on " + source.publication.channel() + " stream "
+                            + source.publication.streamId() + " (start the gateway with -Dreplay.transport=aeron,"
+                            + " or runSubscriber)");
+                }
+                LockSupport.parkNanos(10_000_000);
+            }
+        }
+    }
+
+    /**
+     * Arguments: NAME=log per stream, in engine order (default: the
+     * -Dreplay.streams logs).
+     */
+    public static void main(String[] args) throws IOException {
+        String[] specs = args.length > 0 ? args : System.getProperty("replay.streams", DEFAULT_STREAMS).split(",");
+
+        MediaDriver driver = EMBEDDED_DRIVER ? AeronTransport.launchDriver(AeronTransport.DIRECTORY) : null;
+        List<Source> sources = new ArrayList<>();
+        Aeron aeron = AeronTransport.connect(AeronTransport.DIRECTORY);
+        try {
+            for (int i = 0; i < specs.length; i++) {
+                int eq = specs[i].indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Bad stream (expected NAME=path): " + specs[i]);
+                }
+                String name = specs[i].substring(0, eq).trim().toUpperCase();
+                String log = specs[i].substring(eq + 1).trim();
+                Publication publication = aeron.addExclusivePublication(AeronTransport.CHANNEL,
+                        AeronTransport.STREAM_ID + i);
+                sources.add(new Source(name, Files.newBufferedReader(Paths.get(log), StandardCharsets.US_ASCII),
+                        publication));
+                System.out.println("[Publisher] [" + name + "] " + log + " -> " + AeronTransport.CHANNEL + " stream "
+                        + (AeronTransport.STREAM_ID + i));
+            }
+
+            awaitSubscribers(sources);
+            System.out.println("[Publisher] Replaying at " + (SPEED > 0 ? SPEED + "x" : "max speed") + "...");
+            new SimplePublisher(sources).run();
+        } finally {
+            for (Source source : sources) {
+                source.reader.close();
+                source.publication.close();
+            }
+            aeron.close();
+            if (driver != null) {
+                driver.close();
+            }
+        }
+    }
+}
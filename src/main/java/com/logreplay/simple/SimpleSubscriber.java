@@ -0,0 +1,60 @@
+package com.logreplay.simple;
+
+import com.logreplay.transport.AeronTransport;
+import com.logreplay.transport.StreamSink;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple Aeron Subscriber - just counts and prints messages
+ *
+ * Receives on the same channel and stream ids as the engine's AeronTransport
+ * (and through it), without indexing or comparing: checks that a publisher
+ * is reachable and what rate the transport alone sustains.
+ *
+ * Run: ./gradlew runSubscriber --args="OMS ONC" (stream names in engine
+ * order, default OMS), -Dreplay.aeron.* as for the gateway. Ctrl+C to stop.
+ */
+public final class SimpleSubscriber {
+
+    // Messages printed per stream, then only rates
+    private static final int PRINT_FIRST = Integer.getInteger("replay.subscriber.print", 5);
+
+    public static void main(String[] args) throws InterruptedException {
+        String[] names = args.length > 0 ? args : new String[] { "OMS" };
+
+        Map<String, LongAdder> counts = new LinkedHashMap<>();
+        Map<String, StreamSink> sinks = new LinkedHashMap<>();
+        for (String arg : names) {
+            String name = arg.trim().toUpperCase();
+            LongAdder count = new LongAdder();
+            counts.put(name, count);
+            sinks.put(name, (payload, receiveNanos) -> {
+                count.increment();
+                if (count.sum() <= PRINT_FIRST) {
+                    System.out.println("[" + name + "] " + payload);
+                }
+            });
+        }
+
+        AeronTransport transport = AeronTransport.fromSystemProperties();
+        transport.start(sinks);
+        Runtime.getRuntime().addShutdownHook(new Thread(transport::close));
+        System.out.println("[Subscriber] Waiting for messages (Ctrl+C to stop)...");
+
+        Map<String, Long> previous = new LinkedHashMap<>();
+        while (true) {
+            Thread.sleep(1000);
+            counts.forEach((name, count) -> {
+                long total = count.sum();
+                long last = previous.getOrDefault(name, 0L);
+                if (total != last) {
+                    System.out.println("[" + name + "] " + (total - last) + " msg/s | Total " + total);
+                }
+                previous.put(name, total);
+            });
+        }
+    }
+}
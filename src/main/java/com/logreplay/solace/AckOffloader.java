@@ -0,0 +1,107 @@
+package com.logreplay.solace;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Client Acknowledgments off the Worker Threads
+ *
+ * Design:
+ * - Workers hand finished messages over through a lock-free queue.
+ * - One ack thread drains it and acks them: as soon as flushSize are
+ *   pending, or when the oldest pending message is flushMillis old.
+ * - If the queue is ever full the worker acks inline rather than waiting.
+ *
+ * JCSMP has no bulk or cumulative ack, so every message is still one
+ * ackMessage() call and the broker sees as many acks as without this
+ * class (the API coalesces them on the wire by its own ack window and
+ * timer). The gain is that workers never call into the API to ack, and
+ * an ack is at most flushMillis late.
+ */
+public class AckOffloader {
+
+    private final ManyToOneConcurrentArrayQueue<BytesXMLMessage> pending;
+    private final BytesXMLMessage[] drained;
+    private final long flushNanos;
+    private final Thread ackThread;
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile boolean running = true;
+
+    public AckOffloader(int flushSize, long flushMillis) {
+        this.pending = new ManyToOneConcurrentArrayQueue<>(Math.max(1024, flushSize * 16));
+        this.drained = new BytesXMLMessage[flushSize];
+        this.flushNanos = flushMillis * 1_000_000L;
+        this.ackThread = new Thread(this::ackLoop, "solace-ack");
+        this.ackThread.setDaemon(true);
+        this.ackThread.start();
+    }
+
+    /**
+     * Called by a worker once the message is fully processed.
+     */
+    public void acknowledge(BytesXMLMessage msg) {
+        if (!pending.offer(msg)) {
+            msg.ackMessage();
+            acked.incrementAndGet();
+        }
+    }
+
+    private void ackLoop() {
+        int count = 0;
+        long oldest = 0;
+        while (running || !pending.isEmpty()) {
+            BytesXMLMessage msg = pending.poll();
+            if (msg != null) {
+                if (count == 0) {
+                    oldest = System.nanoTime();
+                }
+                drained[count++] = msg;
+            }
+
+            boolean full = count == drained.length;
+            boolean due = count > 0 && System.nanoTime() - oldest >= flushNanos;
+            if (full || due) {
+                flush(count);
+                count = 0;
+            } else if (msg == null) {
+                LockSupport.parkNanos(Math.min(flushNanos, 1_000_000L));
+            }
+        }
+        flush(count);
+    }
+
+    private void flush(int count) {
+        if (count == 0)
+            return;
+        for (int i = 0; i < count; i++) {
+            drained[i].ackMessage();
+            drained[i] = null;
+        }
+        acked.addAndGet(count);
+        flushes.incrementAndGet();
+    }
+
+    public long getAckedCount() {
+        return acked.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Acks everything still pending, then stops the ack thread.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            ackThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.logreplay.solace;
+
+import com.logreplay.index.SimpleLogIndex;
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2LongHashMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * MISSING_IN_REPLAY Deadlines for One Stream
+ *
+ * Design:
+ * - Replay clock in log time: the latest original log time matched so far
+ *   (by any worker), running on with the wall clock while nothing newer
+ *   matches, so the tail of the log still comes due after the replay ends.
+ *   It starts with the first match.
+ * - An original is expected once the clock reaches its own log time and is
+ *   overdue graceMillis later. Originals are scheduled in file order as the
+ *   clock reaches them, so the wheel only holds those inside the grace
+ *   window, not the whole log. Log millis never go back in file order
+ *   (SimpleLogIndex clamps out-of-order lines to the latest time before
+ *   them), so stopping at the first original not due yet is exact.
+ * - Deadlines sit in a hashed timer wheel (Agrona DeadlineTimerWheel, 16ms
+ *   ticks): scheduling is O(1) and each tick only looks at its own slot.
+ * - An expired deadline never touches the index from this thread: the key
+ *   goes to the worker owning it (expire), which evicts the key's pending
+ *   originals that are overdue. Chains stay single-threaded per key, and an
+ *   original matched in the meantime just finds nothing to evict.
+ * - poll() runs on one thread (the engine's reconciler), matched() on the
+ *   workers.
+ */
+final class ReplayReconciler {
+
+    private static final long TICK_MILLIS = 16;
+    private static final int TICKS_PER_WHEEL = 1024;
+    // Per poll, so a clock that jumps ahead (replay started mid-log) is caught up in steps
+    private static final int SCHEDULE_LIMIT = 64 * 1024;
+    private static final int EXPIRY_LIMIT = 4096;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final SimpleLogIndex index;
+    private final long graceMillis;
+    private final ObjLongConsumer<String> expire; // (key, overdue up to log millis) -> owning worker
+
+    // Written under the lock by workers: nanos first, so a reader never sees a
+    // newer log time with an older wall-clock anchor
+    private volatile long clockLogMillis = NOT_STARTED;
+    private volatile long clockNanos;
+
+    // Reconciler thread only
+    private DeadlineTimerWheel wheel;
+    private final DeadlineTimerWheel.TimerHandler onExpiry = this::onTimerExpiry;
+    private final Long2LongHashMap timerOrdinals = new Long2LongHashMap(-1);
+    private int cursor; // Next ordinal to schedule
+
+    ReplayReconciler(SimpleLogIndex index, long graceMillis, ObjLongConsumer<String> expire) {
+        this.index = index;
+        this.graceMillis = graceMillis;
+        this.expire = expire;
+    }
+
+    /**
+     * Worker thread: a replayed message was matched with the original logged
+     * at logMillis; moves the clock forward if that is the latest so far.
+     */
+    void matched(long logMillis, long nanos) {
+        if (logMillis > clockLogMillis) {
+            synchronized (this) {
+                if (logMillis > clockLogMillis) {
+                    clockNanos = nanos;
+                    clockLogMillis = logMillis;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reconciler thread: schedules the originals the clock has reached and
+     * hands every key with an expired deadline to its worker.
+     */
+    void poll(long nanos) {
+        long logMillis = clockLogMillis;
+        if (logMillis == NOT_STARTED) {
+            return;
+        }
+        long now = logMillis + (nanos - clockNanos) / 1_000_000;
+        if (wheel == null) {
+            wheel = new DeadlineTimerWheel(TimeUnit.MILLISECONDS, now, TICK_MILLIS, TICKS_PER_WHEEL);
+        }
+
+        int count = index.messageCount();
+        for (int scheduled = 0; cursor < count && scheduled < SCHEDULE_LIMIT; scheduled++) {
+            long expected = index.logMillis(cursor);
+            if (expected > now) {
+                break;
+            }
+            timerOrdinals.put(wheel.scheduleTimer(expected + graceMillis), cursor++);
+        }
+
+        // One tick per poll() call, catch up to now
+        int expired;
+        do {
+            expired = wheel.poll(now, onExpiry, EXPIRY_LIMIT);
+        } while (expired > 0 || wheel.currentTickTime() <= now);
+    }
+
+    private boolean onTimerExpiry(TimeUnit timeUnit, long now, long timerId) {
+        int ordinal = (int) timerOrdinals.remove(timerId);
+        expire.accept(index.keyAt(ordinal), now - graceMillis);
+        return true;
+    }
+}
@@ -0,0 +1,331 @@
+package com.logreplay.solace;
+
+import com.logreplay.compare.FIXComparator;
+import com.logreplay.diag.Diagnostics;
+import com.logreplay.index.SimpleLogIndex;
+import com.logreplay.index.TagDictionary;
+import com.logreplay.metrics.StageMetrics;
+import com.logreplay.metrics.StageMetrics.Stage;
+import com.logreplay.pipeline.PartitionedPipeline;
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import com.solacesystems.jcsmp.BytesMessage;
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.FlowReceiver;
+import com.solacesystems.jcsmp.TextMessage;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One Replay Stream: 1 Original Log + 1 Topic
+ *
+ * Owns its index, its worker pipeline and its counters, so OMS and ONC are
+ * processed in parallel without sharing any per-stream state.
+ *
+ * With a grace window (replay.missing.graceMs), originals the replay has
+ * left behind are evicted as MISSING_IN_REPLAY (see ReplayReconciler), on
+ * the worker owning their key like any replayed message.
+ */
+final class ReplayStream {
+
+    // Progress line cadence at SUMMARY level
+    private static final int SUMMARY_EVERY = 10_000;
+
+    final String name;
+    String topic; // Topic (direct) or queue (guaranteed), set on start
+
+    private final SimpleLogIndex simpleIndex;
+    private final FIXComparator comparator;
+    private final Consumer<ComparisonResult> resultHandler;
+    private final Consumer<BytesXMLMessage> acknowledger;
+    private final PartitionedPipeline<ReplayTask> pipeline;
+    private final boolean keyIsSymbol; // Key spec "55": the key already is the symbol
+    private final ReplayReconciler reconciler; // null without a grace window
+    private final TagDictionary dictionary; // COMPACT index: originals are encoded records, else null
+
+    private final AtomicInteger processedCount = new AtomicInteger(0);
+    private final AtomicInteger mismatchCount = new AtomicInteger(0);
+    private final AtomicInteger missingCount = new AtomicInteger(0);
+    final StageMetrics metrics = new StageMetrics();
+    long sampledProcessed; // Processed count at the previous metrics sample (sampler thread only)
+
+    // Guaranteed mode: this stream's flow and its pause state
+    FlowReceiver flow;
+    volatile boolean paused;
+    final AtomicInteger pauseCount = new AtomicInteger(0);
+
+    /**
+     * One replayed message on its way from the dispatcher to a worker, or
+     * (replayMsg null) a key whose originals up to overdueLogMillis are to
+     * be evicted.
+     */
+    private static final class ReplayTask {
+        final String orderId;
+        final String replayMsg;
+        final BytesXMLMessage msg; // null when submitted in-process
+        final long receiveNanos;
+        final long queuedNanos;
+        final long overdueLogMillis;
+
+        ReplayTask(String orderId, String replayMsg, BytesXMLMessage msg, long receiveNanos, long queuedNanos) {
+            this.orderId = orderId;
+            this.replayMsg = replayMsg;
+            this.msg = msg;
+            this.receiveNanos = receiveNanos;
+            this.queuedNanos = queuedNanos;
+            this.overdueLogMillis = Long.MIN_VALUE;
+        }
+
+        ReplayTask(String orderId, long overdueLogMillis, long nanos) {
+            this.orderId = orderId;
+            this.replayMsg = null;
+            this.msg = null;
+            this.receiveNanos = nanos;
+            this.queuedNanos = nanos;
+            this.overdueLogMillis = overdueLogMillis;
+        }
+    }
+
+    /**
+     * graceMillis > 0 reports originals not replayed within that much log
+     * time as MISSING_IN_REPLAY; the index must have its log times loaded.
+     */
+    ReplayStream(String name, SimpleLogIndex index, FIXComparator comparator, int workers,
+            int queueCapacity, long graceMillis, Consumer<ComparisonResult> resultHandler,
+            Consumer<BytesXMLMessage> acknowledger) {
+        this.name = name;
+        this.simpleIndex = index;
+        this.comparator = comparator;
+        this.resultHandler = resultHandler;
+        this.acknowledger = acknowledger;
+        this.keyIsSymbol = "55".equals(index.getKeySpec().toString());
+        this.dictionary = index.getDictionary();
+        this.reconciler = graceMillis > 0 ? new ReplayReconciler(index, graceMillis, this::expire) : null;
+        this.pipeline = new PartitionedPipeline<>(name, workers, queueCapacity, this::processTask);
+        this.pipeline.start();
+    }
+
+    /**
+     * Dispatcher thread: read, key and hand off. Blocks (back-pressure) while
+     * the owning worker's queue is full.
+     */
+    void dispatch(BytesXMLMessage msg) {
+        long receiveNanos = System.nanoTime();
+        try {
+            // 1. Get Text (no normalization needed: the tokenizer understands
+            // SOH, "|" and "^A" delimiters as they arrive)
+            String replayMsg = (msg instanceof TextMessage)
+                    ? ((TextMessage) msg).getText()
+                    : new String(((BytesMessage) msg).getData());
+            dispatch(replayMsg, msg, receiveNanos);
+        } catch (Exception e) {
+            System.err.println("[" + name + "] Dispatch error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same as dispatch(msg) for a payload that did not come from the broker
+     * (msg null: nothing to ack). receiveNanos is the System.nanoTime() the
+     * message counts as received, carried to the result for latency.
+     */
+    void dispatch(String replayMsg, BytesXMLMessage msg, long receiveNanos) {
+        // 2. Get ID (same key spec as the index, Tag 55 by default)
+        String orderId = simpleIndex.keyOf(replayMsg);
+
+        if (orderId == null) {
+            if (Diagnostics.MESSAGE_ENABLED) {
+                Diagnostics.log("[" + name + "] SKIPPING: Could not find key " + simpleIndex.getKeySpec()
+                        + " in msg of len " + replayMsg.length());
+            }
+            ack(msg); // Nothing to compare, do not let the broker redeliver it
+            return;
+        }
+
+        long queuedNanos = System.nanoTime();
+        metrics.record(Stage.PARSE, queuedNanos - receiveNanos);
+        pipeline.submit(orderId.hashCode(), new ReplayTask(orderId, replayMsg, msg, receiveNanos, queuedNanos));
+    }
+
+    /**
+     * Worker thread: lookup, compare, emit, ack. Each stage is timed into the
+     * stream's StageMetrics.
+     */
+    private void processTask(ReplayTask task) {
+        if (task.replayMsg == null) {
+            evictOverdue(task);
+            return;
+        }
+        String orderId = task.orderId;
+        String replayMsg = task.replayMsg;
+        long started = System.nanoTime();
+        metrics.record(Stage.QUEUE, started - task.queuedNanos);
+        long publishing = 0;
+        try {
+            // Trace decision made once per message, sampled by order
+            boolean trace = Diagnostics.MESSAGE_ENABLED && Diagnostics.sampled(orderId);
+            if (trace && Diagnostics.TABLE_ENABLED) {
+                Diagnostics.log("[" + name + "] Raw Recv: " + replayMsg);
+            }
+
+            ComparisonResult result = new ComparisonResult(orderId);
+            result.processType = name.toLowerCase();
+            result.symbol = keyIsSymbol ? orderId : FIXComparator.extractOrderId(replayMsg);
+            result.receiveNanos = task.receiveNanos;
+
+            // 3. Lookup the next original of this key (Nth replay vs Nth original), COMPACT: still encoded
+            byte[] originalRecord = (dictionary != null) ? simpleIndex.getRecord(orderId) : null;
+            String originalMsg = (dictionary != null) ? null : simpleIndex.getMessage(orderId);
+            long lookedUp = System.nanoTime();
+            long lookupNanos = lookedUp - started;
+
+            if (originalMsg == null && originalRecord == null) {
+                if (trace) {
+                    Diagnostics.log("[" + name + "] ID [" + orderId + "] NOT FOUND in Index. (Msg len: "
+                            + replayMsg.length() + ")");
+                }
+                result.status = "MISSING_IN_ORIGINAL";
+            } else {
+                if (trace) {
+                    Diagnostics.log("[" + name + "] ID [" + orderId + "] FOUND. Comparing...");
+                }
+
+                // 4. Compare
+                boolean table = trace && Diagnostics.TABLE_ENABLED;
+                Map<String, String[]> diffs = (originalRecord != null)
+                        ? comparator.compare(dictionary, originalRecord, replayMsg, table)
+                        : comparator.compare(originalMsg, replayMsg, table);
+                if (diffs == null || diffs.isEmpty()) {
+                    result.status = "MATCH";
+                    if (trace) {
+                        Diagnostics.log(">> [" + name + "] RESULT: MATCH for " + orderId);
+                    }
+                } else {
+                    result.status = "MISMATCH";
+                    result.tagMismatches = diffs;
+                    mismatchCount.incrementAndGet();
+                    if (trace) {
+                        Diagnostics.log(
+                                ">> [" + name + "] RESULT: MISMATCH for " + orderId + " (" + diffs.size() + " diffs)");
+                    }
+                }
+                long compared = System.nanoTime();
+                metrics.record(Stage.COMPARE, compared - lookedUp);
+
+                if (reconciler != null) {
+                    reconciler.matched(simpleIndex.pendingLogMillis(orderId), compared);
+                }
+                // Free memory, move the key on to its next original
+                simpleIndex.remove(orderId);
+                lookupNanos += System.nanoTime() - compared;
+            }
+            metrics.record(Stage.LOOKUP, lookupNanos);
+            publishing = System.nanoTime();
+
+            // 5. Emit
+            resultHandler.accept(result);
+            int processed = processedCount.incrementAndGet();
+
+            if (Diagnostics.SUMMARY_ENABLED && processed % SUMMARY_EVERY == 0) {
+                Diagnostics.log("[" + name + "] Processed " + processed + " | Mismatches " + mismatchCount.get()
+                        + " | Remaining " + simpleIndex.size());
+            }
+
+        } catch (Exception e) {
+            System.err.println("[" + name + "] Processing error: " + e.getMessage());
+        }
+
+        // 6. Ack (also after an error, a redelivery would fail the same way)
+        ack(task.msg);
+        long published = System.nanoTime();
+        if (publishing != 0) {
+            metrics.record(Stage.PUBLISH, published - publishing);
+        }
+        metrics.record(Stage.TOTAL, published - task.receiveNanos);
+    }
+
+    /**
+     * Reconciler thread: the key has an original past its deadline. Blocks
+     * while the owning worker's queue is full.
+     */
+    private void expire(String orderId, long overdueLogMillis) {
+        long now = System.nanoTime();
+        pipeline.submit(orderId.hashCode(), new ReplayTask(orderId, overdueLogMillis, now));
+    }
+
+    /**
+     * Worker thread: evicts the key's pending originals logged up to the
+     * task's log time, one MISSING_IN_REPLAY result each. Nothing to do when
+     * they were matched in the meantime.
+     */
+    private void evictOverdue(ReplayTask task) {
+        String orderId = task.orderId;
+        while (simpleIndex.pendingLogMillis(orderId) <= task.overdueLogMillis) {
+            // Only read (MAPPED: materialized) when the symbol has to come from the message
+            String symbol = keyIsSymbol ? orderId : FIXComparator.extractOrderId(simpleIndex.getMessage(orderId));
+            simpleIndex.remove(orderId);
+
+            ComparisonResult result = new ComparisonResult(orderId);
+            result.processType = name.toLowerCase();
+            result.symbol = symbol;
+            result.status = "MISSING_IN_REPLAY";
+            result.receiveNanos = task.receiveNanos;
+            missingCount.incrementAndGet();
+            if (Diagnostics.MESSAGE_ENABLED && Diagnostics.sampled(orderId)) {
+                Diagnostics.log(">> [" + name + "] RESULT: MISSING_IN_REPLAY for " + orderId);
+            }
+            resultHandler.accept(result);
+        }
+    }
+
+    /**
+     * Reconciler thread, every few millis (no-op without a grace window).
+     */
+    void reconcile() {
+        if (reconciler != null) {
+            reconciler.poll(System.nanoTime());
+        }
+    }
+
+    private void ack(BytesXMLMessage msg) {
+        if (msg != null) {
+            acknowledger.accept(msg);
+        }
+    }
+
+    double maxFillRatio() {
+        return pipeline.maxFillRatio();
+    }
+
+    int getProcessedCount() {
+        return processedCount.get();
+    }
+
+    int getMismatchCount() {
+        return mismatchCount.get();
+    }
+
+    int getMissingCount() {
+        return missingCount.get();
+    }
+
+    int getRemaining() {
+        return simpleIndex.size();
+    }
+
+    int getQueueDepth() {
+        return pipeline.queueDepth();
+    }
+
+    long getIndexHeapBytes() {
+        return simpleIndex.heapBytes();
+    }
+
+    long getIndexMappedBytes() {
+        return simpleIndex.mappedBytes();
+    }
+
+    void shutdown() {
+        pipeline.shutdown();
+    }
+}
@@ -1,37 +1,80 @@
 package com.logreplay.solace;
 
 import com.logreplay.compare.FIXComparator;
+import com.logreplay.diag.Diagnostics;
 import com.logreplay.index.SimpleLogIndex;
+import com.logreplay.metrics.MetricsSnapshot;
+import com.logreplay.transport.ReplayTransport;
+import com.logreplay.transport.StreamSink;
 // import com.logreplay.validate.source.CryptUtil; // TODO: Add your CryptUtil class
 import com.solacesystems.jcsmp.*;
 
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
- * Single Stream Solace Replay Engine
- * Simplest possible implementation: 1 Log File + 1 Solace Topic
+ * Multi Stream Solace Replay Engine
+ * One process, N streams (e.g. OMS + ONC): each stream has its own original
+ * log, its own index and its own topic (topic_<stream> in solace.properties).
+ *
+ * Threading:
+ * - The JCSMP dispatcher thread only reads the payload, extracts the order
+ *   key and hands the message to the owning stream's PartitionedPipeline.
+ * - Lookup, comparison, result emission and ack run on that stream's
+ *   workers, routed by key hash so messages of one order stay in order.
+ * - Streams never share an index, a queue or a counter, so a slow stream
+ *   does not hold up the others.
+ * - Worker count / queue size: -Dreplay.workers (split across streams),
+ *   -Dreplay.queueCapacity (per worker).
+ * - Solace (start(configFile)) or any other ReplayTransport
+ *   (start(transport), e.g. Aeron) feeds the same stream pipelines.
+ * - -Dreplay.missing.graceMs > 0: one reconciler thread reports originals
+ *   the replay has left behind as MISSING_IN_REPLAY and evicts them from
+ *   their index (ReplayReconciler).
  */
 public class SolaceReplayEngine {
 
-    private final SimpleLogIndex simpleIndex;
-    private final FIXComparator comparator;
-    private final Consumer<ComparisonResult> resultHandler;
+    private static final int WORKERS = Integer.getInteger("replay.workers",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_CAPACITY = Integer.getInteger("replay.queueCapacity", 64 * 1024);
+    private static final long MISSING_GRACE_MILLIS = Long.getLong("replay.missing.graceMs", 0);
+    private static final long RECONCILE_MILLIS = 10;
+
+    private final List<ReplayStream> streams = new ArrayList<>();
+    private final Map<String, ReplayStream> streamsByTopic = new HashMap<>();
+
+    private long lastSampleNanos = System.nanoTime();
 
     private JCSMPSession session;
     private XMLMessageConsumer consumer;
+    private ReplayTransport transport;
 
-    private final AtomicInteger processedCount = new AtomicInteger(0);
-    private final AtomicInteger mismatchCount = new AtomicInteger(0);
+    // Guaranteed mode only
+    private static final long FLOW_CHECK_MILLIS = 10;
+    private AckOffloader ackOffloader;
+    private ScheduledExecutorService flowControl;
+
+    // MISSING_IN_REPLAY deadlines, all streams
+    private ScheduledExecutorService reconciler;
 
     public static class ComparisonResult {
         public String type = "RESULT"; // Discriminator for UI
+        public String processType; // Stream the result belongs to: "oms", "onc"
         public String orderId;
-        public String status; // "MATCH", "MISMATCH", "MISSING_IN_ORIGINAL"
+        public String symbol; // Tag 55 of the replayed message, for subscription filters
+        public String status; // "MATCH", "MISMATCH", "MISSING_IN_ORIGINAL", "MISSING_IN_REPLAY"
         public Map<String, String[]> tagMismatches = new HashMap<>(); // Never null to avoid UI crash
+        public transient long receiveNanos; // System.nanoTime() on receipt, not sent to the UI
 
         public ComparisonResult(String orderId) {
             this.orderId = orderId;
@@ -39,21 +82,62 @@ public class SolaceReplayEngine {
     }
 
     /**
-     * Initialize with ONE log file
+     * Initialize with ONE log file, replayed from topic_oms.
      */
     public SolaceReplayEngine(String originalLogPath, Consumer<ComparisonResult> resultHandler) {
-        System.out.println("[Engine] Initializing Single-Stream Engine...");
+        this(Collections.singletonMap("OMS", originalLogPath), resultHandler);
+    }
 
-        // Build single index
-        this.simpleIndex = new SimpleLogIndex("MAIN", originalLogPath);
-        this.comparator = new FIXComparator();
-        this.resultHandler = resultHandler;
+    /**
+     * Initialize with one original log per stream, e.g. OMS -> OneOmsFixSrcOriginal.log,
+     * ONC -> OneOncFixSrcOriginal.log. Stream names select the topic_<name> property.
+     * Index mode comes from -Dreplay.index.mode (IN_MEMORY, MAPPED, OFF_HEAP or COMPACT).
+     */
+    public SolaceReplayEngine(Map<String, String> originalLogs, Consumer<ComparisonResult> resultHandler) {
+        System.out.println("[Engine] Initializing " + originalLogs.size() + "-Stream Engine...");
+
+        SimpleLogIndex.Mode indexMode = SimpleLogIndex.Mode
+                .valueOf(System.getProperty("replay.index.mode", "IN_MEMORY").toUpperCase());
+        FIXComparator comparator = new FIXComparator();
+        int workersPerStream = Math.max(1, WORKERS / originalLogs.size());
+
+        for (Map.Entry<String, String> entry : new LinkedHashMap<>(originalLogs).entrySet()) {
+            String name = entry.getKey().toUpperCase();
+            // One index per stream
+            SimpleLogIndex index = new SimpleLogIndex(name, entry.getValue(), indexMode, MISSING_GRACE_MILLIS > 0);
+            long graceMillis = MISSING_GRACE_MILLIS;
+            if (graceMillis > 0 && !index.hasLogTimes()) {
+                System.err.println("[" + name + "] No log times, MISSING_IN_REPLAY disabled");
+                graceMillis = 0;
+            }
+            streams.add(new ReplayStream(name, index, comparator, workersPerStream, QUEUE_CAPACITY, graceMillis,
+                    resultHandler, this::acknowledge));
+        }
+
+        if (MISSING_GRACE_MILLIS > 0) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replay-reconciler");
+                t.setDaemon(true);
+                return t;
+            });
+            reconciler.scheduleWithFixedDelay(() -> {
+                for (ReplayStream stream : streams) {
+                    try {
+                        stream.reconcile();
+                    } catch (Exception e) {
+                        System.err.println("[" + stream.name + "] Reconcile error: " + e.getMessage());
+                    }
+                }
+            }, RECONCILE_MILLIS, RECONCILE_MILLIS, TimeUnit.MILLISECONDS);
+            System.out.println("[Engine] MISSING_IN_REPLAY after " + MISSING_GRACE_MILLIS + "ms of log time");
+        }
 
         System.out.println("[Engine] Ready\n");
     }
 
     /**
-     * Start consuming from ONE topic
+     * Start consuming every stream's topic (consumer_mode=direct, default) or
+     * every stream's queue with client acks (consumer_mode=guaranteed)
      */
     public void start(String configFile) throws Exception {
         Properties config = new Properties();
@@ -73,102 +157,335 @@ public class SolaceReplayEngine {
         session.connect();
         System.out.println("[Engine] Connected to Solace");
 
-        // Setup Consumer
-        consumer = session.getMessageConsumer(new XMLMessageListener() {
-            @Override
-            public void onReceive(BytesXMLMessage msg) {
-                processMessage(msg);
-            }
+        if ("guaranteed".equalsIgnoreCase(config.getProperty("consumer_mode", "direct").trim())) {
+            startGuaranteed(config);
+        } else {
+            startDirect(config);
+        }
+    }
 
-            @Override
-            public void onException(JCSMPException e) {
-                System.err.println("Error: " + e.getMessage());
+    /**
+     * Start consuming from a broker-free transport instead of Solace: each
+     * stream gets its own sink into its worker pipeline. Nothing is acked,
+     * the transport's own back-pressure applies when workers are saturated.
+     */
+    public void start(ReplayTransport transport) throws Exception {
+        Map<String, StreamSink> sinks = new LinkedHashMap<>();
+        for (ReplayStream stream : streams) {
+            sinks.put(stream.name, (payload, receiveNanos) -> stream.dispatch(payload, null, receiveNanos));
+        }
+        this.transport = transport;
+        transport.start(sinks);
+    }
+
+    /**
+     * Direct mode: one consumer for all topics; each message is routed to its
+     * stream by the topic it was published on.
+     */
+    private void startDirect(Properties config) throws JCSMPException {
+        for (ReplayStream stream : streams) {
+            String topicName = config.getProperty("topic_" + stream.name.toLowerCase());
+            if (topicName == null || topicName.trim().isEmpty()) {
+                throw new IllegalArgumentException("No topic_" + stream.name.toLowerCase() + " in config");
             }
-        });
+            stream.topic = topicName.trim();
+            if (streamsByTopic.put(stream.topic, stream) != null) {
+                throw new IllegalArgumentException("Topic " + stream.topic + " is mapped to more than one stream");
+            }
+        }
 
+        consumer = session.getMessageConsumer(listener(null));
         consumer.start();
 
-        // Subscribe to SINGLE topic
-        String topicName = config.getProperty("topic_oms"); // Using OMS topic for now
-        Topic topic = JCSMPFactory.onlyInstance().createTopic(topicName);
-        session.addSubscription(topic);
-
-        System.out.println("[Engine] Subscribed to: " + topicName);
+        for (ReplayStream stream : streams) {
+            Topic topic = JCSMPFactory.onlyInstance().createTopic(stream.topic);
+            session.addSubscription(topic);
+            System.out.println("[Engine] [" + stream.name + "] Subscribed to: " + stream.topic);
+        }
     }
 
-    private void processMessage(BytesXMLMessage msg) {
-        try {
-            // 1. Get Text & Normalize
-            String rawMsg = (msg instanceof TextMessage)
-                    ? ((TextMessage) msg).getText()
-                    : new String(((BytesMessage) msg).getData());
+    /**
+     * Guaranteed mode: bind one flow per stream to its provisioned queue
+     * (queue_<stream>, or queue_name for a single stream). Client acks are
+     * handed to AckOffloader's thread (still one ack per message) and each
+     * flow is stopped while its own stream's worker queues are saturated, so
+     * the broker holds the backlog instead of this process.
+     */
+    private void startGuaranteed(Properties config) throws JCSMPException {
+        int windowSize = Integer.parseInt(config.getProperty("flow_window_size", "255").trim());
+        int ackFlushSize = Integer.parseInt(config.getProperty("ack_flush_size", "256").trim());
+        long ackFlushMillis = Long.parseLong(config.getProperty("ack_flush_millis", "50").trim());
+        double pauseAt = Double.parseDouble(config.getProperty("flow_pause_fill_ratio", "0.8").trim());
+        double resumeAt = Double.parseDouble(config.getProperty("flow_resume_fill_ratio", "0.3").trim());
+
+        ackOffloader = new AckOffloader(ackFlushSize, ackFlushMillis);
+
+        for (ReplayStream stream : streams) {
+            String queueName = config.getProperty("queue_" + stream.name.toLowerCase());
+            if ((queueName == null || queueName.trim().isEmpty()) && streams.size() == 1) {
+                queueName = config.getProperty("queue_name");
+            }
+            if (queueName == null || queueName.trim().isEmpty()) {
+                throw new IllegalArgumentException("No queue_" + stream.name.toLowerCase() + " in config");
+            }
+            stream.topic = queueName.trim();
 
-            // DEBUG: Raw Solace Msg
-            // System.out.println("[SOLACE] Raw Recv: " + rawMsg);
+            ConsumerFlowProperties flowProps = new ConsumerFlowProperties();
+            flowProps.setEndpoint(JCSMPFactory.onlyInstance().createQueue(stream.topic));
+            flowProps.setAckMode(JCSMPProperties.SUPPORTED_MESSAGE_ACK_CLIENT);
+            flowProps.setTransportWindowSize(windowSize);
 
-            // NORMALIZE: Force all delimiters to standard SOH (\u0001)
-            String replayMsg = rawMsg.replace('|', '\u0001').replace("^A", "\u0001");
+            // Queue already identifies the stream, no routing needed
+            stream.flow = session.createFlow(listener(stream), flowProps, new EndpointProperties());
+            stream.flow.start();
 
-            // 2. Get ID (Tag -88)
-            String orderId = FIXComparator.extractOrderId(replayMsg);
+            System.out.println("[Engine] [" + stream.name + "] Bound to queue: " + stream.topic + " (window "
+                    + windowSize + ", acks flushed per " + ackFlushSize + " msgs / " + ackFlushMillis + "ms)");
+        }
 
-            if (orderId == null) {
-                System.out.println("[SOLACE] SKIPPING: Could not find Tag -88 in msg of len " + replayMsg.length());
-                return;
+        flowControl = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "solace-flow-control");
+            t.setDaemon(true);
+            return t;
+        });
+        flowControl.scheduleAtFixedRate(() -> {
+            for (ReplayStream stream : streams) {
+                checkFlow(stream, pauseAt, resumeAt);
             }
+        }, FLOW_CHECK_MILLIS, FLOW_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-            ComparisonResult result = new ComparisonResult(orderId);
+    /**
+     * Listener bound to one stream (flows), or routing by destination when
+     * stream is null (direct consumer).
+     */
+    private XMLMessageListener listener(ReplayStream stream) {
+        return new XMLMessageListener() {
+            @Override
+            public void onReceive(BytesXMLMessage msg) {
+                ReplayStream target = stream != null ? stream : route(msg);
+                if (target != null) {
+                    target.dispatch(msg);
+                } else {
+                    acknowledge(msg); // Not one of ours
+                }
+            }
 
-            // 3. Lookup in HashMap
-            String originalMsg = simpleIndex.getMessage(orderId);
+            @Override
+            public void onException(JCSMPException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        };
+    }
 
-            if (originalMsg == null) {
-                System.out.println(
-                        "[SOLACE] ID [" + orderId + "] NOT FOUND in Index. (Msg len: " + replayMsg.length() + ")");
-                result.status = "MISSING_IN_ORIGINAL";
-            } else {
-                System.out.println("[SOLACE] ID [" + orderId + "] FOUND. Comparing...");
+    private ReplayStream route(BytesXMLMessage msg) {
+        Destination destination = msg.getDestination();
+        ReplayStream stream = destination != null ? streamsByTopic.get(destination.getName()) : null;
+        if (stream == null && streams.size() == 1) {
+            stream = streams.get(0);
+        }
+        if (stream == null && Diagnostics.MESSAGE_ENABLED) {
+            Diagnostics.log("[Engine] SKIPPING: No stream for destination "
+                    + (destination != null ? destination.getName() : null));
+        }
+        return stream;
+    }
 
-                // 4. Compare
-                Map<String, String[]> diffs = comparator.compare(originalMsg, replayMsg);
-                if (diffs == null || diffs.isEmpty()) {
-                    result.status = "MATCH";
-                    System.out.println(">> RESULT: MATCH for " + orderId);
-                } else {
-                    result.status = "MISMATCH";
-                    result.tagMismatches = diffs;
-                    mismatchCount.incrementAndGet();
-                    System.out.println(">> RESULT: MISMATCH for " + orderId + " (" + diffs.size() + " diffs)");
+    /**
+     * Hysteresis between pause and resume so the flow does not flap.
+     */
+    private void checkFlow(ReplayStream stream, double pauseAt, double resumeAt) {
+        double fill = stream.maxFillRatio();
+        try {
+            if (!stream.paused && fill >= pauseAt) {
+                stream.flow.stop();
+                stream.paused = true;
+                stream.pauseCount.incrementAndGet();
+                if (Diagnostics.SUMMARY_ENABLED) {
+                    Diagnostics.log("[" + stream.name + "] Flow PAUSED (worker queue " + Math.round(fill * 100)
+                            + "% full)");
+                }
+            } else if (stream.paused && fill <= resumeAt) {
+                stream.flow.start();
+                stream.paused = false;
+                if (Diagnostics.SUMMARY_ENABLED) {
+                    Diagnostics.log("[" + stream.name + "] Flow RESUMED (worker queue " + Math.round(fill * 100)
+                            + "% full)");
                 }
-                // Free memory
-                simpleIndex.remove(orderId);
             }
+        } catch (JCSMPException e) {
+            System.err.println("[" + stream.name + "] Flow control error: " + e.getMessage());
+        }
+    }
 
-            // 5. Emit & Ack
-            resultHandler.accept(result);
-            processedCount.incrementAndGet();
+    private void acknowledge(BytesXMLMessage msg) {
+        if (ackOffloader != null) {
+            ackOffloader.acknowledge(msg);
+        } else {
             msg.ackMessage();
+        }
+    }
+
+    /**
+     * In-process entry point (load harness, tests): the payload goes through
+     * the same keying, worker pipeline and comparison as a broker message of
+     * that stream, without a Solace session. Blocks while the stream's worker
+     * queue is full.
+     */
+    public void submit(String streamName, String payload) {
+        submit(streamName, payload, System.nanoTime());
+    }
 
-        } catch (Exception e) {
-            System.err.println("Processing error: " + e.getMessage());
+    /**
+     * Same as submit(streamName, payload), with an explicit receive time: a
+     * paced source passes the time the message was due, so latency includes
+     * any delay from falling behind schedule.
+     */
+    public void submit(String streamName, String payload, long receiveNanos) {
+        stream(streamName).dispatch(payload, null, receiveNanos);
+    }
+
+    public List<String> getStreamNames() {
+        List<String> names = new ArrayList<>();
+        for (ReplayStream stream : streams) {
+            names.add(stream.name);
         }
+        return names;
     }
 
     public int getProcessedCount() {
-        return processedCount.get();
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.getProcessedCount();
+        }
+        return total;
     }
 
     public int getMismatchCount() {
-        return mismatchCount.get();
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.getMismatchCount();
+        }
+        return total;
+    }
+
+    public int getMissingCount() {
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.getMissingCount();
+        }
+        return total;
     }
 
     public int getRemaining() {
-        return simpleIndex.size();
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.getRemaining();
+        }
+        return total;
+    }
+
+    public int getQueueDepth() {
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.getQueueDepth();
+        }
+        return total;
+    }
+
+    public int getPauseCount() {
+        int total = 0;
+        for (ReplayStream stream : streams) {
+            total += stream.pauseCount.get();
+        }
+        return total;
+    }
+
+    /**
+     * Samples every stream: totals, throughput and stage latencies since the
+     * previous call, queue depth and index footprint. Latency intervals are
+     * reset on each call, so there must be one sampler (MetricsReporter).
+     */
+    public synchronized MetricsSnapshot sampleMetrics() {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - lastSampleNanos, 1) / 1e9;
+        lastSampleNanos = now;
+
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        snapshot.timestamp = System.currentTimeMillis();
+        snapshot.intervalSeconds = seconds;
+        for (ReplayStream stream : streams) {
+            MetricsSnapshot.StreamMetrics metrics = new MetricsSnapshot.StreamMetrics();
+            metrics.processed = stream.getProcessedCount();
+            metrics.mismatches = stream.getMismatchCount();
+            metrics.missing = stream.getMissingCount();
+            metrics.throughput = (metrics.processed - stream.sampledProcessed) / seconds;
+            stream.sampledProcessed = metrics.processed;
+            metrics.queueDepth = stream.getQueueDepth();
+            metrics.remaining = stream.getRemaining();
+            metrics.indexHeapBytes = stream.getIndexHeapBytes();
+            metrics.indexMappedBytes = stream.getIndexMappedBytes();
+            metrics.latencyMicros = stream.metrics.interval();
+            snapshot.streams.put(stream.name, metrics);
+        }
+        return snapshot;
+    }
+
+    public int getProcessedCount(String streamName) {
+        return stream(streamName).getProcessedCount();
+    }
+
+    public int getMismatchCount(String streamName) {
+        return stream(streamName).getMismatchCount();
+    }
+
+    public int getRemaining(String streamName) {
+        return stream(streamName).getRemaining();
+    }
+
+    private ReplayStream stream(String streamName) {
+        for (ReplayStream stream : streams) {
+            if (stream.name.equalsIgnoreCase(streamName)) {
+                return stream;
+            }
+        }
+        throw new IllegalArgumentException("Unknown stream: " + streamName);
     }
 
     public void shutdown() {
+        if (reconciler != null)
+            reconciler.shutdownNow();
+        if (flowControl != null) {
+            // Must not resume a flow after it is stopped below
+            flowControl.shutdownNow();
+            try {
+                flowControl.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (consumer != null)
             consumer.close();
+        if (transport != null)
+            transport.close();
+        // Guaranteed: stop delivery but keep the flows open, acks go out through them
+        for (ReplayStream stream : streams) {
+            if (stream.flow != null)
+                stream.flow.stop();
+        }
+        // Finish what was already handed to the workers, and ack it, before disconnecting
+        for (ReplayStream stream : streams) {
+            stream.shutdown();
+            System.out.println("[" + stream.name + "] Processed " + stream.getProcessedCount() + " | Mismatches "
+                    + stream.getMismatchCount() + " | Missing " + stream.getMissingCount() + " | Remaining "
+                    + stream.getRemaining());
+        }
+        if (ackOffloader != null)
+            ackOffloader.shutdown();
+        for (ReplayStream stream : streams) {
+            if (stream.flow != null)
+                stream.flow.close();
+        }
         if (session != null)
             session.closeSession();
         System.out.println("Shutdown complete.");
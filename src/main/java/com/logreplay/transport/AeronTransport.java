@@ -0,0 +1,156 @@
+package com.logreplay.transport;
+
+import io.aeron.Aeron;
+import io.aeron.CommonContext;
+import io.aeron.FragmentAssembler;
+import io.aeron.Subscription;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker-Free Replay Transport over Aeron
+ *
+ * Design:
+ * - One Aeron message = one replayed FIX message, raw ASCII (no "parse: "
+ *   prefix, no framing).
+ * - One subscription per replay stream on replay.aeron.channel (aeron:ipc
+ *   by default, or e.g. aeron:udp?endpoint=localhost:40123), stream id
+ *   replay.aeron.streamId + the stream's position in the engine (OMS 1001,
+ *   ONC 1002 with the default streams).
+ * - One poller thread per stream hands each message to its sink. When the
+ *   stream's workers are saturated the sink blocks, the poller stops
+ *   reading and the publisher sees BACK_PRESSURED: no message is lost and
+ *   nothing piles up in this process. Other streams keep going.
+ * - By default the media driver is embedded in this process (shared
+ *   threading mode) at replay.aeron.dir, so publishers in other processes
+ *   reach it over IPC without running a driver of their own.
+ */
+public final class AeronTransport implements ReplayTransport {
+
+    // Shared with SimplePublisher / SimpleSubscriber so both ends agree
+    public static final String CHANNEL = System.getProperty("replay.aeron.channel", CommonContext.IPC_CHANNEL);
+    public static final int STREAM_ID = Integer.getInteger("replay.aeron.streamId", 1001);
+    public static final String DIRECTORY = System.getProperty("replay.aeron.dir",
+            CommonContext.getAeronDirectoryName());
+
+    private static final boolean EMBEDDED_DRIVER = Boolean
+            .parseBoolean(System.getProperty("replay.aeron.embeddedDriver", "true"));
+    private static final ThreadingMode THREADING_MODE = ThreadingMode
+            .valueOf(System.getProperty("replay.aeron.threadingMode", "SHARED").toUpperCase());
+    private static final boolean BUSY_SPIN = "spin".equalsIgnoreCase(System.getProperty("replay.aeron.idle", "backoff"));
+    private static final int FRAGMENT_LIMIT = 256;
+
+    private final String channel;
+    private final int baseStreamId;
+    private final boolean embeddedDriver;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final List<Thread> pollers = new ArrayList<>();
+    private final LongAdder received = new LongAdder();
+    private volatile boolean running;
+    private MediaDriver driver;
+    private Aeron aeron;
+
+    public AeronTransport(String channel, int baseStreamId, boolean embeddedDriver) {
+        this.channel = channel;
+        this.baseStreamId = baseStreamId;
+        this.embeddedDriver = embeddedDriver;
+    }
+
+    /**
+     * Configured from -Dreplay.aeron.* (see ARCHITECTURE.md).
+     */
+    public static AeronTransport fromSystemProperties() {
+        return new AeronTransport(CHANNEL, STREAM_ID, EMBEDDED_DRIVER);
+    }
+
+    /**
+     * Media driver at directory, for IPC with other processes on this host.
+     */
+    public static MediaDriver launchDriver(String directory) {
+        MediaDriver driver = MediaDriver.launch(new MediaDriver.Context()
+                .aeronDirectoryName(directory)
+                .threadingMode(THREADING_MODE)
+                .dirDeleteOnStart(true)
+                .dirDeleteOnShutdown(true));
+        System.out.println("[Aeron] Media driver started (" + THREADING_MODE + "): " + directory);
+        return driver;
+    }
+
+    /**
+     * Client of the media driver at directory (embedded or standalone).
+     */
+    public static Aeron connect(String directory) {
+        return Aeron.connect(new Aeron.Context().aeronDirectoryName(directory));
+    }
+
+    @Override
+    public void start(Map<String, StreamSink> streams) {
+        if (embeddedDriver) {
+            driver = launchDriver(DIRECTORY);
+        }
+        aeron = connect(DIRECTORY);
+        running = true;
+
+        int index = 0;
+        for (Map.Entry<String, StreamSink> stream : streams.entrySet()) {
+            String name = stream.getKey();
+            int streamId = baseStreamId + index++;
+            Subscription subscription = aeron.addSubscription(channel, streamId);
+            subscriptions.add(subscription);
+
+            Thread poller = new Thread(() -> poll(name, subscription, stream.getValue()),
+                    "aeron-" + name.toLowerCase());
+            poller.setDaemon(true);
+            pollers.add(poller);
+            System.out.println("[Aeron] [" + name + "] Subscribed to " + channel + " stream " + streamId);
+        }
+        pollers.forEach(Thread::start);
+    }
+
+    private void poll(String name, Subscription subscription, StreamSink sink) {
+        // Reassembles messages larger than one MTU / term fragment
+        FragmentHandler handler = new FragmentAssembler((buffer, offset, length, header) -> {
+            sink.accept(buffer.getStringWithoutLengthAscii(offset, length), System.nanoTime());
+            received.increment();
+        });
+        IdleStrategy idle = BUSY_SPIN ? new BusySpinIdleStrategy() : new BackoffIdleStrategy();
+
+        while (running) {
+            try {
+                idle.idle(subscription.poll(handler, FRAGMENT_LIMIT));
+            } catch (Exception e) {
+                System.err.println("[Aeron] [" + name + "] Receive error: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread poller : pollers) {
+            try {
+                poller.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        subscriptions.forEach(Subscription::close);
+        if (aeron != null) {
+            aeron.close();
+        }
+        if (driver != null) {
+            driver.close();
+        }
+        System.out.println("[Aeron] Received " + received.sum() + " msgs");
+    }
+}
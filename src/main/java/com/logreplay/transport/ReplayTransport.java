@@ -0,0 +1,29 @@
+package com.logreplay.transport;
+
+import java.util.Map;
+
+/**
+ * Source of Replayed Messages for the Engine
+ *
+ * Implementations:
+ * - AeronTransport: broker-free, IPC or UDP (regression runs, local
+ *   stand-in for the broker)
+ * - Solace (JCSMP) is built into SolaceReplayEngine.start(configFile): its
+ *   acks and flow control act on the stream workers directly.
+ *
+ * A transport keeps the streams independent: a stream whose sink blocks
+ * must not hold up the others.
+ */
+public interface ReplayTransport {
+
+    /**
+     * Starts delivering each stream's messages to its sink, keyed by stream
+     * name (engine order). Returns once receiving.
+     */
+    void start(Map<String, StreamSink> streams) throws Exception;
+
+    /**
+     * Stops receiving. Messages already handed to a sink are still processed.
+     */
+    void close();
+}
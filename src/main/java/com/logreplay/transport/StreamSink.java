@@ -0,0 +1,18 @@
+package com.logreplay.transport;
+
+/**
+ * Entry of One Replay Stream into the Engine
+ *
+ * Handed to a ReplayTransport per stream by SolaceReplayEngine.start(transport).
+ */
+@FunctionalInterface
+public interface StreamSink {
+
+    /**
+     * One replayed FIX message, as received. receiveNanos is the
+     * System.nanoTime() it counts as received (latency starts there). Blocks
+     * while the stream's workers are saturated: a transport calling this from
+     * its receive thread stops reading, which is its back-pressure.
+     */
+    void accept(String payload, long receiveNanos);
+}
@@ -0,0 +1,71 @@
+package com.logreplay.gateway;
+
+import com.logreplay.solace.SolaceReplayEngine.ComparisonResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResultCodecTest {
+
+    // Same frame as web-ui/src/protocol/decodeResults.test.js decodes: keep both in step
+    static final String GOLDEN_FRAME = "0100020001000000" // template 1, schema 2, 1 result
+            + "01" // MISMATCH
+            + "034f4d53" // "OMS"
+            + "02003432" // "42"
+            + "ff" // null symbol
+            + "0100" // 1 mismatch
+            + "fbffffff" // tag -5
+            + "010041" // "A"
+            + "ffff"; // null
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    @Test
+    void encodesTheDocumentedLayout() {
+        ComparisonResult result = new ComparisonResult("42");
+        result.processType = "OMS";
+        result.status = "MISMATCH";
+        result.tagMismatches.put("-5", new String[] { "A", null });
+
+        byte[] frame = new ResultCodec().encode(Collections.singletonList(result));
+        assertArrayEquals(hex(GOLDEN_FRAME), frame);
+    }
+
+    @Test
+    void negativeTagsRoundTripAsSignedInts() {
+        int[] tags = { -1, -5, Integer.MIN_VALUE, 44, Integer.MAX_VALUE };
+        ComparisonResult result = new ComparisonResult("1");
+        result.status = "MISMATCH";
+        for (int tag : tags) {
+            result.tagMismatches.put(Integer.toString(tag), new String[] { "o", "r" });
+        }
+
+        ByteBuffer frame = ByteBuffer.wrap(new ResultCodec().encode(Collections.singletonList(result)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        frame.position(8 + 1 + 1 + 2 + 1 + 1); // header, status, null stream, "1", null symbol
+        int count = frame.getShort() & 0xFFFF;
+        assertEquals(tags.length, count);
+
+        int[] decoded = new int[count];
+        for (int i = 0; i < count; i++) {
+            decoded[i] = frame.getInt();
+            frame.position(frame.position() + 3 + 3); // "o", "r"
+        }
+        Arrays.sort(tags);
+        Arrays.sort(decoded);
+        assertArrayEquals(tags, decoded);
+        assertEquals(0, frame.remaining());
+    }
+}
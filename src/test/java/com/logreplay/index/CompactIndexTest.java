@@ -0,0 +1,105 @@
+package com.logreplay.index;
+
+import com.logreplay.compare.FIXComparator;
+import com.logreplay.index.SimpleLogIndex.Mode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompactIndexTest {
+
+    private static final String[] SYMBOLS = { "VOD", "BARC", "HSBA" };
+    private static final KeySpec KEY = KeySpec.parse("37");
+
+    @TempDir
+    Path dir;
+
+    private static String message(int i, String orderId) {
+        return "8=FIX.4.2|9=0288|35=D|49=BLPCGAP|56=CGA6|34=" + (2000 + i) + "|52=20251205-06:00:00.431|37="
+                + orderId + "|40=" + (1 + i % 2) + "|11=CL" + i + "|55=" + SYMBOLS[i % SYMBOLS.length] + "|54="
+                + (1 + i % 2) + "|38=" + (100 * i) + "|59=0|10=093|";
+    }
+
+    private Path log(List<String> messages) throws IOException {
+        Path path = dir.resolve("orig.log");
+        Files.write(path, (String.join("\n", messages) + "\n").getBytes(StandardCharsets.ISO_8859_1));
+        return path;
+    }
+
+    private static String diffs(Map<String, String[]> diffs) {
+        Map<String, String> sorted = new TreeMap<>();
+        if (diffs != null) {
+            diffs.forEach((tag, values) -> sorted.put(tag, Arrays.toString(values)));
+        }
+        return sorted.toString();
+    }
+
+    @Test
+    void compactMessagesMatchInMemoryIncludingTheNthOfAKey() throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            messages.add(message(i, "ORD" + (i % 150))); // ORD0..ORD49 twice
+        }
+        Path path = log(messages);
+        SimpleLogIndex inMemory = new SimpleLogIndex("MEM", path.toString(), Mode.IN_MEMORY, KEY);
+        SimpleLogIndex compact = new SimpleLogIndex("COMPACT", path.toString(), Mode.COMPACT, KEY);
+        assertEquals(200, compact.messageCount());
+        assertEquals(150, compact.keyCount());
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int k = 0; k < 150; k++) {
+                String key = "ORD" + k;
+                assertEquals(inMemory.getMessage(key), compact.getMessage(key), key);
+                inMemory.remove(key);
+                compact.remove(key);
+            }
+        }
+        assertNull(compact.getMessage("ORD0"));
+        assertNull(compact.getRecord("ORD0"));
+        assertEquals(0, compact.size());
+    }
+
+    @Test
+    void comparingTheRecordGivesTheSameDiffsAsComparingTheMessage() throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            messages.add(message(i, "ORD" + i));
+        }
+        SimpleLogIndex compact = new SimpleLogIndex("COMPACT", log(messages).toString(), Mode.COMPACT, KEY);
+        TagDictionary dictionary = compact.getDictionary();
+        assertNotNull(dictionary);
+
+        String original = message(4, "ORD4").replace('|', '\u0001').trim(); // As indexed
+        String[] replays = {
+                original, // Match
+                original.replace("\u000155=BARC\u0001", "\u000155=HSBA\u0001"), // Coded, value known
+                original.replace("\u000155=BARC\u0001", "\u000155=RIO\u0001"), // Coded, value never seen
+                original.replace("\u000154=1\u0001", "\u000154=2\u0001"), // Coded
+                original.replace("\u000138=400\u0001", "\u000138=500\u0001"), // Raw
+                original.replace("\u000111=CL4\u0001", "\u0001"), // Missing in replay
+                original.replace("\u000110=093", "\u000158=EXTRA\u000110=093"), // Extra in replay
+        };
+
+        FIXComparator comparator = new FIXComparator();
+        byte[] record = compact.getRecord("ORD4");
+        assertEquals(original, compact.getMessage("ORD4"));
+        for (int i = 0; i < replays.length; i++) {
+            String expected = diffs(comparator.compare(original, replays[i], false));
+            assertEquals(i == 0, expected.equals("{}"), replays[i]);
+            assertEquals(expected, diffs(comparator.compare(dictionary, record, replays[i], false)), replays[i]);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.logreplay.index;
+
+import com.logreplay.fix.FixTokenizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeySpecTest {
+
+    private static String keyOf(String spec, String message) {
+        return KeySpec.parse(spec).extract(new FixTokenizer().wrap(message.replace('|', '\u0001')));
+    }
+
+    @Test
+    void singleTag() {
+        assertEquals("VOD", keyOf("55", "8=FIX.4.2|35=D|55=VOD|"));
+        assertNull(keyOf("55", "8=FIX.4.2|35=D|"));
+    }
+
+    @Test
+    void componentsAreJoinedInSpecOrderWhateverTheTagOrder() {
+        assertEquals("8387+G+12", keyOf("37+35+34", "8=FIX.4.2|34=12|35=G|37=8387|"));
+    }
+
+    @Test
+    void firstPresentAlternativeWins() {
+        assertEquals("8387+D", keyOf("37/11+35", "8=FIX.4.2|35=D|11=CL1|37=8387|"));
+        assertEquals("CL1+D", keyOf("37/11+35", "8=FIX.4.2|35=D|11=CL1|"));
+        assertNull(keyOf("37/11+35", "8=FIX.4.2|35=D|"));
+        assertNull(keyOf("37/11+35", "8=FIX.4.2|37=8387|"));
+    }
+
+    @Test
+    void specIsTrimmedAndKeptForDisplay() {
+        KeySpec spec = KeySpec.parse(" 37 / 11 + 35 ");
+        assertEquals("37 / 11 + 35", spec.toString());
+        assertEquals("8387+D", spec.extract(new FixTokenizer().wrap("35=D\u000137=8387\u0001")));
+    }
+
+    @Test
+    void nonNumericTagIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("37+MsgType"));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("37++35"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.logreplay.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageArenaTest {
+
+    @TempDir
+    Path dir;
+
+    private String[] raw;
+    private long[] offsets;
+
+    private static String normalized(String raw) {
+        return raw.replace("^A", "\u0001").replace("|", "\u0001").trim();
+    }
+
+    /**
+     * Writes the messages to a log and copies them all into a sealed arena.
+     */
+    private MessageArena arenaOf(int count, int padding) throws IOException {
+        raw = new String[count];
+        offsets = new long[count];
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String delimiter = (i % 2 == 0) ? "^A" : "|";
+            raw[i] = "8=FIX.4.2" + delimiter + "35=D" + delimiter + "37=ORD" + i + delimiter + "58="
+                    + "x".repeat(i % padding) + delimiter + "10=000" + delimiter + " \n";
+            offsets[i] = file.length();
+            file.append(raw[i]);
+        }
+        Path path = dir.resolve("orig.log");
+        Files.write(path, file.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        MappedLog log = new MappedLog(path);
+        MessageArena arena = new MessageArena(count);
+        for (int i = 0; i < count; i++) {
+            arena.put(i, log, offsets[i], raw[i].length());
+        }
+        arena.seal();
+        return arena;
+    }
+
+    @Test
+    void messagesComeBackNormalizedUntilRemoved() throws IOException {
+        MessageArena arena = arenaOf(100, 50);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(normalized(raw[i]), arena.get(i));
+        }
+        arena.remove(7);
+        arena.remove(7);
+        assertNull(arena.get(7));
+        assertEquals(normalized(raw[8]), arena.get(8));
+    }
+
+    @Test
+    void compactionMovesSurvivorsAndReturnsChunks() throws IOException {
+        int count = 20_000;
+        MessageArena arena = arenaOf(count, 1_000); // About 10MB: three 4MB chunks
+        long built = arena.offHeapBytes();
+        assertTrue(built >= 3L * MessageArena.CHUNK_BYTES);
+
+        // Keep one in ten: every chunk goes below 25% live and is compacted
+        for (int i = 0; i < count; i++) {
+            if (i % 10 != 0) {
+                arena.remove(i);
+            }
+        }
+        assertTrue(arena.offHeapBytes() < built);
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                assertEquals(normalized(raw[i]), arena.get(i));
+            } else {
+                assertNull(arena.get(i));
+            }
+        }
+
+        for (int i = 0; i < count; i += 10) {
+            arena.remove(i);
+        }
+        // Only the compaction target, which is never dropped, may be left
+        assertTrue(arena.offHeapBytes() <= MessageArena.CHUNK_BYTES);
+    }
+}
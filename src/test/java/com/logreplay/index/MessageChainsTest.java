@@ -0,0 +1,77 @@
+package com.logreplay.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageChainsTest {
+
+    @Test
+    void nthConsumeOfAKeyReturnsItsNthMessage() {
+        MessageChains chains = new MessageChains(16);
+        String[] arrivals = { "A", "B", "A", "C", "A", "B" };
+        for (int ordinal = 0; ordinal < arrivals.length; ordinal++) {
+            assertEquals(ordinal, chains.append(arrivals[ordinal]));
+        }
+        assertEquals(3, chains.keyCount());
+        assertEquals(6, chains.messageCount());
+
+        assertEquals(0, chains.current("A"));
+        assertEquals(0, chains.consume("A"));
+        assertEquals(2, chains.consume("A"));
+        assertEquals(1, chains.consume("B"));
+        assertEquals(4, chains.consume("A"));
+        assertEquals(MessageChains.NONE, chains.consume("A"));
+        assertEquals(MessageChains.NONE, chains.current("A"));
+        assertEquals(MessageChains.NONE, chains.consume("D"));
+
+        assertEquals(2, chains.size());
+        assertEquals(6, chains.messageCount());
+    }
+
+    @Test
+    void keyAppendedAgainAfterBeingExhaustedStartsANewChain() {
+        MessageChains chains = new MessageChains(16);
+        chains.append("A");
+        assertEquals(0, chains.consume("A"));
+        assertEquals(MessageChains.NONE, chains.current("A"));
+
+        chains.append("A");
+        assertEquals(1, chains.consume("A"));
+        assertEquals(1, chains.keyCount());
+    }
+
+    @Test
+    void growsAndRehashesPastTheExpectedSize() {
+        MessageChains chains = new MessageChains(1);
+        int keys = 1_000;
+        for (int round = 0; round < 3; round++) {
+            for (int k = 0; k < keys; k++) {
+                chains.append("K" + k);
+            }
+        }
+        assertEquals(keys, chains.keyCount());
+        for (int k = 0; k < keys; k++) {
+            for (int round = 0; round < 3; round++) {
+                assertEquals(round * keys + k, chains.consume("K" + k));
+            }
+        }
+        assertEquals(0, chains.size());
+    }
+
+    @Test
+    void remainingMessagesAreVisitedInArrivalOrderPerKey() {
+        MessageChains chains = new MessageChains(16);
+        for (String key : new String[] { "A", "B", "A", "B", "A" }) {
+            chains.append(key);
+        }
+        chains.consume("A");
+
+        List<String> visited = new ArrayList<>();
+        chains.forEachRemaining((key, ordinal) -> visited.add(key + ordinal));
+        assertEquals(List.of("A2", "A4", "B1", "B3"), visited);
+    }
+}
@@ -0,0 +1,67 @@
+package com.logreplay.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelIndexBuilderTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Every message as [start, end) text, in the order the target saw them.
+     */
+    private static List<String> scan(MappedLog log, int parallelism) {
+        List<String> seen = new ArrayList<>();
+        int count = ParallelIndexBuilder.<Void>build("TEST", log, parallelism, (start, end, partial) -> {
+            StringBuilder text = new StringBuilder((int) (end - start));
+            for (long p = start; p < end; p++) {
+                text.append((char) (log.get(p) & 0xFF));
+            }
+            partial.add(text.toString(), start, null);
+        }, (key, location, value) -> seen.add(key));
+        assertEquals(seen.size(), count);
+        return seen;
+    }
+
+    @Test
+    void rangesSplitOnFixBoundariesInFileOrder() throws IOException {
+        // Several MB so the log is split into several ranges, messages of uneven length so
+        // the approximate split points land inside messages
+        List<String> messages = new ArrayList<>();
+        StringBuilder file = new StringBuilder("log header, not a message\n");
+        for (int i = 0; file.length() < 5 << 20; i++) {
+            String message = "8=FIX.4.2\u00019=100\u000135=D\u000137=ORD" + i + "\u000158=" + "x".repeat(i % 97)
+                    + "\u000110=000\u0001\n";
+            messages.add(message);
+            file.append(message);
+        }
+        Path path = dir.resolve("orig.log");
+        Files.write(path, file.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        MappedLog log = new MappedLog(path);
+        List<String> parallel = scan(log, 4);
+        assertEquals(messages, parallel);
+        assertEquals(scan(log, 1), parallel);
+        for (String message : parallel) {
+            assertTrue(message.startsWith("8=FIX"));
+        }
+    }
+
+    @Test
+    void logWithoutFixMessagesHasNone() throws IOException {
+        Path path = dir.resolve("empty.log");
+        Files.write(path, "no messages here\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(List.of(), scan(new MappedLog(path), 4));
+    }
+}
@@ -0,0 +1,43 @@
+package com.logreplay.index;
+
+import com.logreplay.fix.FixTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagDictionaryTest {
+
+    private static int[] tags(int count) {
+        int[] tags = new int[count];
+        for (int i = 0; i < count; i++) {
+            tags[i] = i + 1;
+        }
+        return tags;
+    }
+
+    @Test
+    void lastOf255SlotsIsCoded() {
+        TagDictionary dictionary = new TagDictionary(tags(255));
+        assertEquals(254, dictionary.slotOf(255));
+        assertEquals(255, dictionary.tagOf(254));
+
+        String message = "8=FIX.4.2\u0001255=VALUE\u0001300=RAW";
+        byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] record = dictionary.encode(bytes, bytes.length);
+        assertTrue(record.length < bytes.length);
+        assertEquals(message, dictionary.decode(record));
+
+        FixTokenizer replay = new FixTokenizer().wrap("255=VALUE");
+        assertTrue(replay.next());
+        assertEquals(0, dictionary.codeOf(254, replay, replay.valueOffset(), replay.valueLength()));
+    }
+
+    @Test
+    void moreThan255TagsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TagDictionary(tags(256)));
+    }
+}
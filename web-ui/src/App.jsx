@@ -10,7 +10,7 @@ import './index.css';
 const WS_URL = 'ws://localhost:8888';
 
 function App() {
-    const { isConnected, messages, logs, clearLogs } = useWebSocket(WS_URL);
+    const { isConnected, messages, logs, metrics, clearLogs } = useWebSocket(WS_URL);
     const [activeTab, setActiveTab] = useState('onc');
     const [selectedOrder, setSelectedOrder] = useState(null);
 
@@ -40,7 +40,7 @@ function App() {
                         <span className="icon">📊</span>
                         <h1>Log Replay Monitor</h1>
                     </div>
-                    <ConnectionStatus isConnected={isConnected} />
+                    <ConnectionStatus isConnected={isConnected} metrics={metrics} />
                 </div>
             </header>
 
@@ -1,12 +1,20 @@
 import React from 'react';
 
-const ConnectionStatus = ({ isConnected }) => {
+const ConnectionStatus = ({ isConnected, metrics }) => {
+    // Results per second over the last metrics interval, all streams
+    const throughput = metrics
+        ? Object.values(metrics.streams || {}).reduce((sum, s) => sum + (s.throughput || 0), 0)
+        : null;
+
     return (
         <div className={`connection-status ${isConnected ? 'online' : 'offline'}`}>
             <div className={`status-indicator ${isConnected ? 'online' : 'offline'}`}></div>
             <span className="status-text">
                 {isConnected ? 'Connected' : 'Disconnected'}
             </span>
+            {isConnected && throughput !== null && (
+                <span className="status-text">{Math.round(throughput)} msg/s</span>
+            )}
         </div>
     );
 };
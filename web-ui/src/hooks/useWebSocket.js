@@ -1,9 +1,16 @@
 import { useState, useEffect, useRef, useCallback } from 'react';
+import decodeResults from '../protocol/decodeResults';
+
+// Server-side filter: the dashboard only shows results with tag mismatches,
+// so MATCH and MISSING_* results are not even serialized for it. Results come
+// as binary frames (protocol/decodeResults), control messages stay JSON text.
+const SUBSCRIPTION = { type: 'SUBSCRIBE', statuses: ['MISMATCH'], encoding: 'BINARY' };
 
 const useWebSocket = (url) => {
     const [isConnected, setIsConnected] = useState(false);
     const [messages, setMessages] = useState([]);
     const [logs, setLogs] = useState([]);
+    const [metrics, setMetrics] = useState(null);
     const wsRef = useRef(null);
     const reconnectTimeoutRef = useRef(null);
     const reconnectAttemptsRef = useRef(0);
@@ -19,43 +26,74 @@ const useWebSocket = (url) => {
             addLog(`Attempting to connect to ${url}...`, 'info');
 
             const ws = new WebSocket(url);
+            ws.binaryType = 'arraybuffer';
 
             ws.onopen = () => {
                 setIsConnected(true);
                 reconnectAttemptsRef.current = 0;
                 addLog('WebSocket connection established successfully', 'success');
+                ws.send(JSON.stringify(SUBSCRIPTION));
             };
 
             ws.onmessage = (event) => {
                 try {
-                    const data = JSON.parse(event.data);
-
-                    // --- STACK TRACE PROTECTION & STRICT VALIDATION ---
-                    // Explicitly reject if:
-                    // 1. Data is null/empty
-                    // 2. data.orderId is missing, "undefined", or null
-                    // 3. data.tagMismatches is missing or empty
-                    const orderId = data?.orderId;
-                    const tagMismatches = data?.tagMismatches || {};
-                    const mismatchCount = Object.keys(tagMismatches).length;
-
-                    if (!orderId || orderId === 'undefined' || mismatchCount === 0) {
-                        // Log locally to console for debugging, but don't show in UI to keep it clean
-                        console.warn('REJECTED: Received invalid or empty order payload:', data);
+                    const data = event.data instanceof ArrayBuffer
+                        ? decodeResults(event.data)
+                        : JSON.parse(event.data);
+
+                    // Periodic engine metrics snapshot, not an order
+                    if (data?.type === 'METRICS') {
+                        setMetrics(data);
+                        return;
+                    }
+
+                    // Subscription acknowledgement / rejection
+                    if (data?.type === 'SUBSCRIBED') {
+                        addLog(`Subscribed: ${JSON.stringify(data.filter)}`, 'success');
+                        return;
+                    }
+                    if (data?.type === 'ERROR') {
+                        addLog(`Gateway rejected message: ${data.message}`, 'error');
                         return;
                     }
 
-                    addLog(`[VALIDATED] Received Order: ${orderId} | Mismatches: ${mismatchCount}`, 'info');
+                    // Results arrive batched as a JSON array frame (one object still accepted)
+                    const accepted = (Array.isArray(data) ? data : [data]).filter(result => {
+                        // --- STACK TRACE PROTECTION & STRICT VALIDATION ---
+                        // Explicitly reject if:
+                        // 1. Data is null/empty
+                        // 2. result.orderId is missing, "undefined", or null
+                        // 3. result.tagMismatches is missing or empty
+                        const orderId = result?.orderId;
+                        const tagMismatches = result?.tagMismatches || {};
+                        const mismatchCount = Object.keys(tagMismatches).length;
+
+                        if (!orderId || orderId === 'undefined' || mismatchCount === 0) {
+                            // Log locally to console for debugging, but don't show in UI to keep it clean
+                            console.warn('REJECTED: Received invalid or empty order payload:', result);
+                            return false;
+                        }
+
+                        addLog(`[VALIDATED] Received Order: ${orderId} | Mismatches: ${mismatchCount}`, 'info');
+                        return true;
+                    });
+
+                    if (accepted.length === 0) {
+                        return;
+                    }
 
+                    // One state update per frame, not per result
                     setMessages(prev => {
-                        const existingIndex = prev.findIndex(msg => msg.orderId === orderId);
-                        if (existingIndex !== -1) {
-                            const updated = [...prev];
-                            updated[existingIndex] = data;
-                            return updated;
-                        } else {
-                            return [...prev, data];
+                        const updated = [...prev];
+                        for (const result of accepted) {
+                            const existingIndex = updated.findIndex(msg => msg.orderId === result.orderId);
+                            if (existingIndex !== -1) {
+                                updated[existingIndex] = result;
+                            } else {
+                                updated.push(result);
+                            }
                         }
+                        return updated;
                     });
                 } catch (error) {
                     addLog(`WS JSON Error: ${error.message}`, 'error');
@@ -110,6 +148,7 @@ const useWebSocket = (url) => {
         isConnected,
         messages,
         logs,
+        metrics,
         clearLogs
     };
 };
@@ -0,0 +1,66 @@
+// Decoder for binary result frames (gateway ResultCodec, keep both in step).
+// Returns the same objects as the JSON encoding, so callers do not care which
+// one the connection negotiated.
+
+const TEMPLATE_RESULTS = 1;
+const SCHEMA_VERSION = 2;
+const STATUSES = ['MATCH', 'MISMATCH', 'MISSING_IN_ORIGINAL', 'MISSING_IN_REPLAY'];
+const NULL_U8 = 0xff;
+const NULL_U16 = 0xffff;
+
+const decodeResults = (buffer) => {
+    const view = new DataView(buffer);
+    const bytes = new Uint8Array(buffer);
+    let offset = 0;
+
+    const ascii = (length) => {
+        let value = '';
+        for (let i = 0; i < length; i++) {
+            value += String.fromCharCode(bytes[offset + i]);
+        }
+        offset += length;
+        return value;
+    };
+    const string8 = () => {
+        const length = view.getUint8(offset);
+        offset += 1;
+        return length === NULL_U8 ? null : ascii(length);
+    };
+    const string16 = () => {
+        const length = view.getUint16(offset, true);
+        offset += 2;
+        return length === NULL_U16 ? null : ascii(length);
+    };
+
+    const templateId = view.getUint16(0, true);
+    const version = view.getUint16(2, true);
+    if (templateId !== TEMPLATE_RESULTS || version !== SCHEMA_VERSION) {
+        throw new Error(`Unsupported binary frame: template ${templateId} v${version}`);
+    }
+    const count = view.getUint32(4, true);
+    offset = 8;
+
+    const results = new Array(count);
+    for (let r = 0; r < count; r++) {
+        const status = STATUSES[view.getUint8(offset)] ?? 'UNKNOWN';
+        offset += 1;
+        const processType = string8();
+        const orderId = string16();
+        const symbol = string8();
+        const mismatchCount = view.getUint16(offset, true);
+        offset += 2;
+
+        const tagMismatches = {};
+        for (let m = 0; m < mismatchCount; m++) {
+            const tag = view.getInt32(offset, true);
+            offset += 4;
+            const original = string16();
+            const replayed = string16();
+            tagMismatches[tag] = [original, replayed];
+        }
+        results[r] = { type: 'RESULT', processType, orderId, symbol, status, tagMismatches };
+    }
+    return results;
+};
+
+export default decodeResults;
@@ -0,0 +1,37 @@
+// Run with: npm test (node --test, no dependencies)
+import test from 'node:test';
+import assert from 'node:assert/strict';
+import decodeResults from './decodeResults.js';
+
+// Same frame as ResultCodecTest.GOLDEN_FRAME encodes: keep both in step
+const GOLDEN_FRAME =
+    '0100020001000000' + // template 1, schema 2, 1 result
+    '01' + // MISMATCH
+    '034f4d53' + // "OMS"
+    '02003432' + // "42"
+    'ff' + // null symbol
+    '0100' + // 1 mismatch
+    'fbffffff' + // tag -5
+    '010041' + // "A"
+    'ffff'; // null
+
+const frameOf = (hex) => Uint8Array.from(hex.match(/../g), (b) => parseInt(b, 16)).buffer;
+
+test('decodes the gateway frame, negative tags included', () => {
+    assert.deepEqual(decodeResults(frameOf(GOLDEN_FRAME)), [
+        {
+            type: 'RESULT',
+            processType: 'OMS',
+            orderId: '42',
+            symbol: null,
+            status: 'MISMATCH',
+            tagMismatches: { '-5': ['A', null] },
+        },
+    ]);
+});
+
+test('rejects another schema version', () => {
+    const frame = frameOf(GOLDEN_FRAME);
+    new DataView(frame).setUint16(2, 1, true);
+    assert.throws(() => decodeResults(frame), /Unsupported binary frame/);
+});